@@ -1,11 +1,21 @@
 import java.util.Arrays;
 import java.util.Scanner;
+import cache.KeyScheduleCache;
+import metrics.CipherMetrics;
+import metrics.LatencyHistogram;
 
 public class AES {
 
-    private static final int BLOCK_SIZE = 16;
-    private static final int NUM_ROUNDS = 10;
-    private static final int KEY_SIZE = 16; // 128-bit key
+    static final int BLOCK_SIZE = 16;
+    static final int KEY_SIZE = 16; // default 128-bit key; 24 (AES-192) and 32 (AES-256) bytes work too
+
+    // Round constants, one per key-length step of the key expansion (AES-128 uses all ten, AES-192 eight, AES-256 seven)
+    private static final int[] RCON = {0x01, 0x02, 0x04, 0x08, 0x10, 0x20, 0x40, 0x80, 0x1B, 0x36};
+
+    private static final CipherMetrics.Counter ENCRYPTED = CipherMetrics.counter("AES", "encrypt");
+    private static final CipherMetrics.Counter DECRYPTED = CipherMetrics.counter("AES", "decrypt");
+    private static final LatencyHistogram BLOCK_LATENCY = CipherMetrics.histogram("AES", "block");
+    private static final LatencyHistogram KEY_SETUP_LATENCY = CipherMetrics.histogram("AES", "key-setup");
 
     private static final int[] S_BOX = {
         0x63, 0x7C, 0x77, 0x7B, 0xF2, 0x6B, 0x6F, 0xC5, 0x30, 0x01, 0x67, 0x2B, 0xFE, 0xD7, 0xAB, 0x76,
@@ -45,46 +55,78 @@ public class AES {
         0x17, 0x2B, 0x04, 0x7E, 0xBA, 0x77, 0xD6, 0x26, 0xE1, 0x69, 0x14, 0x63, 0x55, 0x21, 0x0C, 0x7D
     };
     
-        // Key schedule
-        private static byte[][] generateSubKeys(byte[] key) {
-            byte[][] subKeys = new byte[11][BLOCK_SIZE];
-            System.arraycopy(key, 0, subKeys[0], 0, BLOCK_SIZE);
-    
-            for (int round = 1; round <= NUM_ROUNDS; round++) {
-                byte[] previousKey = subKeys[round - 1];
-                byte[] roundKey = new byte[BLOCK_SIZE];
+        // Key schedule, served from the shared key-schedule cache (the caller gets its own copy)
+        static byte[][] generateSubKeys(byte[] key) {
+            long start = KEY_SETUP_LATENCY.start();
+            byte[][] subKeys = KeyScheduleCache.shared().get("AES", key, AES::expandKey);
+            KEY_SETUP_LATENCY.recordSince(start);
+            return subKeys;
+        }
     
-                // Word rotation
-                byte[] rotatedWord = rotateWord(Arrays.copyOfRange(previousKey, 12, 16));
+        static boolean isKeyLength(int keyLength) {
+            return keyLength == 16 || keyLength == 24 || keyLength == 32;
+        }
     
-                // Word substitution
-                for (int i = 0; i < rotatedWord.length; i++) {
-                    rotatedWord[i] = substituteByte(rotatedWord[i]);
-                }
+        // Rounds for a key of the given length in bytes: 10, 12 or 14
+        static int rounds(int keyLength) {
+            switch (keyLength) {
+                case 16:
+                    return 10;
+                case 24:
+                    return 12;
+                case 32:
+                    return 14;
+                default:
+                    throw new IllegalArgumentException("Key must be 16, 24 or 32 bytes long.");
+            }
+        }
     
-                // XOR with round constant
-                rotatedWord[0] ^= getRoundConstant(round);
-    
-                // Generate subkey
-                for (int i = 0; i < 4; i++) {
-                    int offset = i * 4;
-                    for (int j = 0; j < 4; j++) {
-                        if (i == 0) {
-                            roundKey[offset + j] = (byte) (previousKey[offset + j] ^ rotatedWord[j]);
-                        } else {
-                            roundKey[offset + j] = (byte) (previousKey[offset + j] ^ roundKey[offset + j - 4]);
-                        }
-                    }
-                }
-                subKeys[round] = roundKey;
+        // Key schedule without the cache, for keys that will not be seen again. Expanded as 32-bit big-endian words:
+        // w[i] = w[i - Nk] ^ f(w[i - 1]) for Nk key words
+        static byte[][] expandKey(byte[] key) {
+            int rounds = rounds(key.length);
+            int keyWords = key.length / 4;
+            int[] words = new int[4 * (rounds + 1)];
+            for (int i = 0; i < keyWords; i++) {
+                words[i] = keyWord(key, i);
+            }
+            for (int i = keyWords; i < words.length; i++) {
+                words[i] = expandWord(words[i - 1], words[i - keyWords], i, keyWords);
             }
     
+            byte[][] subKeys = new byte[rounds + 1][BLOCK_SIZE];
+            for (int i = 0; i < words.length; i++) {
+                byte[] roundKey = subKeys[i / 4];
+                int offset = 4 * (i % 4);
+                roundKey[offset] = (byte) (words[i] >>> 24);
+                roundKey[offset + 1] = (byte) (words[i] >>> 16);
+                roundKey[offset + 2] = (byte) (words[i] >>> 8);
+                roundKey[offset + 3] = (byte) words[i];
+            }
+            Arrays.fill(words, 0);
             return subKeys;
         }
     
-        // Rotate the word (4 bytes)
-        private static byte[] rotateWord(byte[] word) {
-            return new byte[]{word[1], word[2], word[3], word[0]};
+        private static int keyWord(byte[] key, int i) {
+            return (key[4 * i] & 0xFF) << 24 | (key[4 * i + 1] & 0xFF) << 16 | (key[4 * i + 2] & 0xFF) << 8
+                    | key[4 * i + 3] & 0xFF;
+        }
+    
+        // Expanded word i from word i - 1 and word i - keyWords
+        private static int expandWord(int previous, int older, int i, int keyWords) {
+            if (i % keyWords == 0) {
+                // Word rotation, substitution and round constant
+                previous = substituteWord(Integer.rotateLeft(previous, 8)) ^ RCON[i / keyWords - 1] << 24;
+            } else if (keyWords > 6 && i % keyWords == 4) {
+                // AES-256 substitutes the middle word of each key-length step too
+                previous = substituteWord(previous);
+            }
+            return older ^ previous;
+        }
+    
+        private static int substituteWord(int word) {
+            return S_BOX[word >>> 24] << 24 | S_BOX[(word >>> 16) & 0xFF] << 16 | S_BOX[(word >>> 8) & 0xFF] << 8
+                    | S_BOX[word & 0xFF];
         }
     
         // Substitute byte using the AES S-box
@@ -97,128 +139,194 @@ public class AES {
             return (byte) INV_S_BOX[b & 0xFF];
         }
     
-        // Get round constant with real implementation
-        private static byte getRoundConstant(int round) {
-            byte rcon = 1;
-            for (int i = 1; i < round; i++) {
-                rcon = (byte) ((rcon << 1) ^ ((rcon & 0x80) != 0 ? 0x1B : 0));
-            }
-            return rcon;
+        // Encrypts one block into a new array
+        static byte[] encrypt(byte[] plaintext, byte[][] subKeys) {
+            byte[] state = new byte[BLOCK_SIZE];
+            encryptBlock(plaintext, 0, state, 0, subKeys);
+            return state;
+        }
+    
+        // Decrypts one block into a new array
+        static byte[] decrypt(byte[] ciphertext, byte[][] subKeys) {
+            byte[] state = new byte[BLOCK_SIZE];
+            decryptBlock(ciphertext, 0, state, 0, subKeys);
+            return state;
         }
     
-        // Encryption process
-        private static byte[] encrypt(byte[] plaintext, byte[][] subKeys) {
-            byte[] state = Arrays.copyOf(plaintext, plaintext.length);
+        // Encryption process; the block at in[inOff] is encrypted into out[outOff], which holds the state, so nothing
+        // is allocated. in and out may be the same array.
+        static void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, byte[][] subKeys) {
+            long start = BLOCK_LATENCY.start();
+            int rounds = subKeys.length - 1;
+            System.arraycopy(in, inOff, out, outOff, BLOCK_SIZE);
     
             // Initial key addition
-            xorStateWithKey(state, subKeys[0]);
+            xorStateWithKey(out, outOff, subKeys[0]);
     
-            for (int round = 1; round <= NUM_ROUNDS; round++) {
+            for (int round = 1; round <= rounds; round++) {
                 // Byte substitution
-                for (int i = 0; i < state.length; i++) {
-                    state[i] = substituteByte(state[i]);
+                for (int i = outOff; i < outOff + BLOCK_SIZE; i++) {
+                    out[i] = substituteByte(out[i]);
                 }
     
                 // Shift rows
-                state = shiftRows(state);
+                shiftRows(out, outOff);
     
                 // Mix columns (not in the last round)
-                if (round < NUM_ROUNDS) {
-                    state = mixColumns(state);
+                if (round < rounds) {
+                    mixColumns(out, outOff);
                 }
     
                 // Add round key
-                xorStateWithKey(state, subKeys[round]);
+                xorStateWithKey(out, outOff, subKeys[round]);
             }
     
-            return state;
+            ENCRYPTED.record(BLOCK_SIZE);
+            BLOCK_LATENCY.recordSince(start);
         }
     
-        // Decryption process
-        private static byte[] decrypt(byte[] ciphertext, byte[][] subKeys) {
-            byte[] state = Arrays.copyOf(ciphertext, ciphertext.length);
+        // Decryption process, in place like encryptBlock
+        static void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, byte[][] subKeys) {
+            long start = BLOCK_LATENCY.start();
+            int rounds = subKeys.length - 1;
+            System.arraycopy(in, inOff, out, outOff, BLOCK_SIZE);
     
             // Initial key addition
-            xorStateWithKey(state, subKeys[NUM_ROUNDS]);
+            xorStateWithKey(out, outOff, subKeys[rounds]);
     
-            for (int round = NUM_ROUNDS - 1; round >= 0; round--) {
+            for (int round = rounds - 1; round >= 0; round--) {
                 // Inverse Shift rows
-                state = inverseShiftRows(state);
+                inverseShiftRows(out, outOff);
     
                 // Inverse Byte substitution
-                for (int i = 0; i < state.length; i++) {
-                    state[i] = inverseSubstituteByte(state[i]);
+                for (int i = outOff; i < outOff + BLOCK_SIZE; i++) {
+                    out[i] = inverseSubstituteByte(out[i]);
                 }
     
                 // Add round key
-                xorStateWithKey(state, subKeys[round]);
+                xorStateWithKey(out, outOff, subKeys[round]);
     
                 // Inverse Mix columns (not in the first round)
                 if (round > 0) {
-                    state = inverseMixColumns(state);
+                    inverseMixColumns(out, outOff);
                 }
             }
     
-            return state;
+            DECRYPTED.record(BLOCK_SIZE);
+            BLOCK_LATENCY.recordSince(start);
         }
     
-        // XOR the state with a round key
-        private static void xorStateWithKey(byte[] state, byte[] key) {
-            for (int i = 0; i < state.length; i++) {
-                state[i] ^= key[i];
+        // Encrypts one block with a key that is used only once: each round key word is derived just before the round
+        // that needs it, in a window of the last Nk words, so no schedule is built and the key-schedule cache is not
+        // touched. Decryption needs the last round key first and always goes through a schedule.
+        static void encryptBlockOnce(byte[] key, byte[] in, int inOff, byte[] out, int outOff) {
+            long start = BLOCK_LATENCY.start();
+            int rounds = rounds(key.length);
+            int keyWords = key.length / 4;
+            int[] window = new int[keyWords]; // word i is at window[i % keyWords]
+            for (int i = 0; i < keyWords; i++) {
+                window[i] = keyWord(key, i);
             }
-        }
+            int expanded = keyWords;
+            System.arraycopy(in, inOff, out, outOff, BLOCK_SIZE);
     
-        // Shift rows implementation
-        private static byte[] shiftRows(byte[] state) {
-            byte[] shiftedState = new byte[BLOCK_SIZE];
-    
-            for (int i = 0; i < 4; i++) {
-                for (int j = 0; j < 4; j++) {
-                    shiftedState[i * 4 + j] = state[i * 4 + (j + i) % 4];
+            for (int round = 0; round <= rounds; round++) {
+                if (round > 0) {
+                    for (int i = outOff; i < outOff + BLOCK_SIZE; i++) {
+                        out[i] = substituteByte(out[i]);
+                    }
+                    shiftRows(out, outOff);
+                    if (round < rounds) {
+                        mixColumns(out, outOff);
+                    }
+                }
+                // Add round key, expanding its four words first
+                for (int column = 0; column < 4; column++) {
+                    int i = 4 * round + column;
+                    for (; expanded <= i; expanded++) {
+                        window[expanded % keyWords] = expandWord(window[(expanded - 1) % keyWords],
+                                window[expanded % keyWords], expanded, keyWords);
+                    }
+                    int word = window[i % keyWords];
+                    int base = outOff + 4 * column;
+                    out[base] ^= (byte) (word >>> 24);
+                    out[base + 1] ^= (byte) (word >>> 16);
+                    out[base + 2] ^= (byte) (word >>> 8);
+                    out[base + 3] ^= (byte) word;
                 }
             }
     
-            return shiftedState;
+            Arrays.fill(window, 0);
+            ENCRYPTED.record(BLOCK_SIZE);
+            BLOCK_LATENCY.recordSince(start);
         }
     
-        // Inverse Shift rows implementation
-        private static byte[] inverseShiftRows(byte[] state) {
-            byte[] shiftedState = new byte[BLOCK_SIZE];
-    
-            for (int i = 0; i < 4; i++) {
-                for (int j = 0; j < 4; j++) {
-                    shiftedState[i * 4 + j] = state[i * 4 + (j - i + 4) % 4];
-                }
+        // XOR the state with a round key
+        private static void xorStateWithKey(byte[] state, int off, byte[] key) {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                state[off + i] ^= key[i];
             }
+        }
+    
+        // Shift rows implementation: row i is rotated left by i
+        private static void shiftRows(byte[] state, int off) {
+            rotateRowLeft(state, off + 4);
+            swapRowHalves(state, off + 8);
+            rotateRowRight(state, off + 12);
+        }
+    
+        // Inverse Shift rows implementation: row i is rotated right by i
+        private static void inverseShiftRows(byte[] state, int off) {
+            rotateRowRight(state, off + 4);
+            swapRowHalves(state, off + 8);
+            rotateRowLeft(state, off + 12);
+        }
+    
+        private static void rotateRowLeft(byte[] state, int base) {
+            byte first = state[base];
+            state[base] = state[base + 1];
+            state[base + 1] = state[base + 2];
+            state[base + 2] = state[base + 3];
+            state[base + 3] = first;
+        }
+    
+        private static void rotateRowRight(byte[] state, int base) {
+            byte last = state[base + 3];
+            state[base + 3] = state[base + 2];
+            state[base + 2] = state[base + 1];
+            state[base + 1] = state[base];
+            state[base] = last;
+        }
     
-            return shiftedState;
+        private static void swapRowHalves(byte[] state, int base) {
+            byte b = state[base];
+            state[base] = state[base + 2];
+            state[base + 2] = b;
+            b = state[base + 1];
+            state[base + 1] = state[base + 3];
+            state[base + 3] = b;
         }
     
         // Mix columns implementation
-        private static byte[] mixColumns(byte[] state) {
-            byte[] mixedState = new byte[BLOCK_SIZE];
-            for (int i = 0; i < 4; i++) {
-                int base = i * 4;
-                mixedState[base] = (byte) (galoisMultiply(state[base], 2) ^ galoisMultiply(state[base + 1], 3) ^ state[base + 2] ^ state[base + 3]);
-                mixedState[base + 1] = (byte) (state[base] ^ galoisMultiply(state[base + 1], 2) ^ galoisMultiply(state[base + 2], 3) ^ state[base + 3]);
-                mixedState[base + 2] = (byte) (state[base] ^ state[base + 1] ^ galoisMultiply(state[base + 2], 2) ^ galoisMultiply(state[base + 3], 3));
-                mixedState[base + 3] = (byte) (galoisMultiply(state[base], 3) ^ state[base + 1] ^ state[base + 2] ^ galoisMultiply(state[base + 3], 2));
+        private static void mixColumns(byte[] state, int off) {
+            for (int base = off; base < off + BLOCK_SIZE; base += 4) {
+                byte s0 = state[base], s1 = state[base + 1], s2 = state[base + 2], s3 = state[base + 3];
+                state[base] = (byte) (galoisMultiply(s0, 2) ^ galoisMultiply(s1, 3) ^ s2 ^ s3);
+                state[base + 1] = (byte) (s0 ^ galoisMultiply(s1, 2) ^ galoisMultiply(s2, 3) ^ s3);
+                state[base + 2] = (byte) (s0 ^ s1 ^ galoisMultiply(s2, 2) ^ galoisMultiply(s3, 3));
+                state[base + 3] = (byte) (galoisMultiply(s0, 3) ^ s1 ^ s2 ^ galoisMultiply(s3, 2));
             }
-            return mixedState;
         }
     
         // Inverse Mix columns implementation
-        private static byte[] inverseMixColumns(byte[] state) {
-            byte[] mixedState = new byte[BLOCK_SIZE];
-            for (int i = 0; i < 4; i++) {
-                int base = i * 4;
-                mixedState[base] = (byte) (galoisMultiply(state[base], 14) ^ galoisMultiply(state[base + 1], 11) ^ galoisMultiply(state[base + 2], 13) ^ galoisMultiply(state[base + 3], 9));
-                mixedState[base + 1] = (byte) (galoisMultiply(state[base], 9) ^ galoisMultiply(state[base + 1], 14) ^ galoisMultiply(state[base + 2], 11) ^ galoisMultiply(state[base + 3], 13));
-                mixedState[base + 2] = (byte) (galoisMultiply(state[base], 13) ^ galoisMultiply(state[base + 1], 9) ^ galoisMultiply(state[base + 2], 14) ^ galoisMultiply(state[base + 3], 11));
-                mixedState[base + 3] = (byte) (galoisMultiply(state[base], 11) ^ galoisMultiply(state[base + 1], 13) ^ galoisMultiply(state[base + 2], 9) ^ galoisMultiply(state[base + 3], 14));
+        private static void inverseMixColumns(byte[] state, int off) {
+            for (int base = off; base < off + BLOCK_SIZE; base += 4) {
+                byte s0 = state[base], s1 = state[base + 1], s2 = state[base + 2], s3 = state[base + 3];
+                state[base] = (byte) (galoisMultiply(s0, 14) ^ galoisMultiply(s1, 11) ^ galoisMultiply(s2, 13) ^ galoisMultiply(s3, 9));
+                state[base + 1] = (byte) (galoisMultiply(s0, 9) ^ galoisMultiply(s1, 14) ^ galoisMultiply(s2, 11) ^ galoisMultiply(s3, 13));
+                state[base + 2] = (byte) (galoisMultiply(s0, 13) ^ galoisMultiply(s1, 9) ^ galoisMultiply(s2, 14) ^ galoisMultiply(s3, 11));
+                state[base + 3] = (byte) (galoisMultiply(s0, 11) ^ galoisMultiply(s1, 13) ^ galoisMultiply(s2, 9) ^ galoisMultiply(s3, 14));
             }
-            return mixedState;
         }
     
         // Real Galois field multiplication
@@ -244,13 +352,12 @@ public class AES {
                 }
     
                 // Input key
-                System.out.println("Enter key (16 characters):");
+                System.out.println("Enter key (16, 24 or 32 characters):");
                 String keyInput = scanner.nextLine();
-                if (keyInput.length() != KEY_SIZE) {
-                    throw new IllegalArgumentException("Key must be exactly 16 characters long.");
-                }
-    
                 byte[] key = keyInput.getBytes();
+                if (!isKeyLength(key.length)) {
+                    throw new IllegalArgumentException("Key must be 16, 24 or 32 characters long.");
+                }
                 byte[][] subKeys = generateSubKeys(key);
     
                 // Encrypt
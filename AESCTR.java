@@ -0,0 +1,143 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import metrics.CipherMetrics;
+
+//AES in counter mode, built on the block function in AES.java.
+//Counter blocks start at the 16-byte IV and are incremented as one 128-bit big-endian number.
+//The StreamCipher methods start from the IV on every call (like LFSR); update() continues the keystream
+//across calls so a long message can be processed chunk by chunk.
+//Keys of 16, 24 or 32 bytes select AES-128, -192 or -256.
+public class AESCTR implements ContinuousStreamCipher {
+    private static final CipherMetrics.Counter PROCESSED = CipherMetrics.counter("AES", "ctr");
+
+    private byte[][] subKeys; // null until a single-use instance needs its second block
+    private byte[] singleUseKey; // until the schedule is expanded
+    private boolean firstBlockDone;
+    private final byte[] iv;
+    private final byte[] counter = new byte[AES.BLOCK_SIZE];
+    private final byte[] keystream = new byte[AES.BLOCK_SIZE];
+    private int used; // keystream bytes of the current block already consumed
+
+    public AESCTR(byte[] key, byte[] iv) {
+        this(key, iv, false);
+    }
+
+    private AESCTR(byte[] key, byte[] iv, boolean singleUse) {
+        if (!AES.isKeyLength(key.length)) {
+            throw new IllegalArgumentException("Key must be 16, 24 or 32 bytes long.");
+        }
+        if (iv.length != AES.BLOCK_SIZE) {
+            throw new IllegalArgumentException("IV must be exactly 16 bytes long.");
+        }
+        if (singleUse) {
+            this.singleUseKey = key.clone();
+        } else {
+            this.subKeys = AES.generateSubKeys(key);
+        }
+        this.iv = iv.clone();
+        reset();
+    }
+
+    // For a key used for one message only, such as a per-message session key. Skips the shared key-schedule cache,
+    // whose lookup hashes the key for an entry that would never be hit again, and encrypts the first counter block
+    // with on-the-fly round keys, so messages of up to one block never build a schedule.
+    public static AESCTR singleUse(byte[] key, byte[] iv) {
+        return new AESCTR(key, iv, true);
+    }
+
+    // Back to the start of the keystream
+    @Override
+    public void reset() {
+        System.arraycopy(iv, 0, counter, 0, AES.BLOCK_SIZE);
+        used = AES.BLOCK_SIZE;
+    }
+
+    // XORs the next len keystream bytes into in and writes the result to out
+    @Override
+    public int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        for (int i = 0; i < len; i++) {
+            if (used == AES.BLOCK_SIZE) {
+                nextBlock();
+            }
+            out[outOff + i] = (byte) (in[inOff + i] ^ keystream[used++]);
+        }
+        PROCESSED.record(len);
+        return len;
+    }
+
+    // As above for all remaining bytes of in; heap buffers use the array path, direct buffers are read in place
+    @Override
+    public int update(ByteBuffer in, ByteBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (in.hasArray() && out.hasArray()) {
+            update(in.array(), in.arrayOffset() + in.position(), len, out.array(), out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + len);
+            return len;
+        }
+        for (int i = 0; i < len; i++) {
+            if (used == AES.BLOCK_SIZE) {
+                nextBlock();
+            }
+            out.put((byte) (in.get() ^ keystream[used++]));
+        }
+        PROCESSED.record(len);
+        return len;
+    }
+
+    private void nextBlock() {
+        if (subKeys != null) {
+            AES.encryptBlock(counter, 0, keystream, 0, subKeys);
+        } else if (!firstBlockDone) {
+            AES.encryptBlockOnce(singleUseKey, counter, 0, keystream, 0);
+            firstBlockDone = true;
+        } else {
+            subKeys = AES.expandKey(singleUseKey);
+            Arrays.fill(singleUseKey, (byte) 0);
+            singleUseKey = null;
+            AES.encryptBlock(counter, 0, keystream, 0, subKeys);
+        }
+        used = 0;
+        // increment the counter block
+        for (int i = AES.BLOCK_SIZE - 1; i >= 0; i--) {
+            if (++counter[i] != 0) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plaintext) {
+        byte[] cipherBytes = new byte[plaintext.length];
+        encrypt(plaintext, 0, plaintext.length, cipherBytes, 0);
+        return cipherBytes;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] cipherBytes) {
+        return encrypt(cipherBytes);
+    }
+
+    @Override
+    public byte[] generateKey(int len) {
+        return encrypt(new byte[len]);
+    }
+
+    @Override
+    public int encrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        reset();
+        return update(in, inOff, len, out, outOff);
+    }
+
+    @Override
+    public int decrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        return encrypt(in, inOff, len, out, outOff);
+    }
+}
@@ -0,0 +1,40 @@
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+
+//JCA CipherSpi for "AES/CTR/NoPadding" over AESCTR. Without an IvParameterSpec, encryption picks a random
+//counter block, available from Cipher.getIV().
+public final class AESCTRCipherSpi extends StreamCipherSpi {
+    private AESCTR ctr;
+
+    public AESCTRCipherSpi() {
+        super("CTR", AES.BLOCK_SIZE, AES.BLOCK_SIZE);
+    }
+
+    @Override
+    void start(byte[] key, byte[] iv) throws InvalidKeyException {
+        if (!AES.isKeyLength(key.length)) {
+            throw new InvalidKeyException("AES key must be 16, 24 or 32 bytes");
+        }
+        ctr = new AESCTR(key, iv);
+    }
+
+    @Override
+    void restart() {
+        ctr.reset();
+    }
+
+    @Override
+    void process(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        ctr.update(in, inOff, len, out, outOff);
+    }
+
+    @Override
+    void process(ByteBuffer in, ByteBuffer out) {
+        ctr.update(in, out);
+    }
+
+    @Override
+    String parameterAlgorithm() {
+        return "AES";
+    }
+}
@@ -0,0 +1,35 @@
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+//JCA CipherSpi for "AES" (ECB, NoPadding or PKCS5Padding) over the block functions in AES.java.
+//The key schedule comes from the shared key-schedule cache through AES.generateSubKeys.
+public final class AESCipherSpi extends BlockCipherSpi {
+    private byte[][] subKeys;
+
+    public AESCipherSpi() {
+        super(AES.BLOCK_SIZE);
+    }
+
+    @Override
+    void setKey(byte[] key) throws InvalidKeyException {
+        if (!AES.isKeyLength(key.length)) {
+            throw new InvalidKeyException("AES key must be 16, 24 or 32 bytes");
+        }
+        if (subKeys != null) {
+            for (byte[] roundKey : subKeys) {
+                Arrays.fill(roundKey, (byte) 0);
+            }
+        }
+        subKeys = AES.generateSubKeys(key);
+    }
+
+    @Override
+    void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        AES.encryptBlock(in, inOff, out, outOff, subKeys);
+    }
+
+    @Override
+    void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        AES.decryptBlock(in, inOff, out, outOff, subKeys);
+    }
+}
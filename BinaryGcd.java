@@ -0,0 +1,183 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+//Iterative binary GCD and modular inverse on mutable int[] limbs (32-bit, least significant limb first).
+//Only shifts, additions, subtractions and comparisons are used, so there is no division per step and no recursion.
+class BinaryGcd {
+    private static final long MASK = 0xFFFFFFFFL;
+
+    private BinaryGcd() {
+    }
+
+    // gcd(a, b) for non-negative a and b (Stein's algorithm)
+    public static BigInteger gcd(BigInteger a, BigInteger b) {
+        if (a.signum() < 0 || b.signum() < 0) {
+            throw new ArithmeticException("gcd arguments must be non-negative");
+        }
+        if (a.signum() == 0) return b;
+        if (b.signum() == 0) return a;
+
+        int len = limbCount(a.max(b));
+        int[] u = MontgomeryContext.toLimbs(a, len);
+        int[] v = MontgomeryContext.toLimbs(b, len);
+        int shift = Math.min(trailingZeros(u), trailingZeros(v));
+        shiftRight(u, trailingZeros(u));
+        while (!isZero(v)) {
+            shiftRight(v, trailingZeros(v));
+            if (compare(u, v) > 0) {
+                int[] swap = u; u = v; v = swap;
+            }
+            subtract(v, u);
+        }
+        return MontgomeryContext.fromLimbs(u).shiftLeft(shift);
+    }
+
+    // a^-1 mod m, throws ArithmeticException when gcd(a, m) != 1
+    public static BigInteger modInverse(BigInteger a, BigInteger m) {
+        if (m.signum() <= 0) {
+            throw new ArithmeticException("Modulus must be positive");
+        }
+        if (m.equals(BigInteger.ONE)) {
+            return BigInteger.ZERO;
+        }
+        BigInteger x = a.signum() < 0 || a.compareTo(m) >= 0 ? a.mod(m) : a;
+        if (m.testBit(0)) {
+            return oddModInverse(x, m);
+        }
+        if (!x.testBit(0)) {
+            throw new ArithmeticException("Not invertible: both values are even");
+        }
+        if (x.equals(BigInteger.ONE)) {
+            return BigInteger.ONE;
+        }
+        // even modulus: with y = m^-1 mod x (x is odd), the inverse is (1 + m * (x - y)) / x
+        BigInteger y = oddModInverse(m.mod(x), x);
+        return BigInteger.ONE.add(m.multiply(x.subtract(y))).divide(x);
+    }
+
+    //binary inverse for an odd modulus; u, v, x1, x2 all stay in [0, m] so plain unsigned limbs suffice
+    private static BigInteger oddModInverse(BigInteger a, BigInteger m) {
+        if (a.signum() == 0) {
+            throw new ArithmeticException("Not invertible: zero");
+        }
+        int len = limbCount(m) + 1; // one spare limb for x + m
+        int[] mod = MontgomeryContext.toLimbs(m, len);
+        int[] u = MontgomeryContext.toLimbs(a, len);
+        int[] v = mod.clone();
+        int[] x1 = new int[len];
+        int[] x2 = new int[len];
+        x1[0] = 1;
+
+        // invariants: x1 * a = u (mod m), x2 * a = v (mod m)
+        while (!isOne(u) && !isOne(v)) {
+            while ((u[0] & 1) == 0) {
+                shiftRight(u, 1);
+                halve(x1, mod);
+            }
+            while ((v[0] & 1) == 0) {
+                shiftRight(v, 1);
+                halve(x2, mod);
+            }
+            if (compare(u, v) >= 0) {
+                subtract(u, v);
+                subtractMod(x1, x2, mod);
+                if (isZero(u)) {
+                    throw new ArithmeticException("Not invertible");
+                }
+            } else {
+                subtract(v, u);
+                subtractMod(x2, x1, mod);
+            }
+        }
+        return MontgomeryContext.fromLimbs(isOne(u) ? x1 : x2);
+    }
+
+    private static int limbCount(BigInteger x) {
+        return Math.max(1, (x.bitLength() + 31) >>> 5);
+    }
+
+    // x = x / 2 mod m (m odd): add m first when x is odd
+    private static void halve(int[] x, int[] m) {
+        if ((x[0] & 1) == 0) {
+            shiftRight(x, 1);
+            return;
+        }
+        add(x, m);
+        shiftRight(x, 1);
+    }
+
+    // x = x - y mod m for x, y in [0, m)
+    private static void subtractMod(int[] x, int[] y, int[] m) {
+        if (compare(x, y) < 0) {
+            add(x, m);
+        }
+        subtract(x, y);
+    }
+
+    private static void add(int[] x, int[] y) {
+        long carry = 0;
+        for (int i = 0; i < x.length; i++) {
+            long s = (x[i] & MASK) + (y[i] & MASK) + carry;
+            x[i] = (int) s;
+            carry = s >>> 32;
+        }
+    }
+
+    // x = x - y, requires x >= y
+    private static void subtract(int[] x, int[] y) {
+        long borrow = 0;
+        for (int i = 0; i < x.length; i++) {
+            long d = (x[i] & MASK) - (y[i] & MASK) - borrow;
+            x[i] = (int) d;
+            borrow = d >>> 63;
+        }
+    }
+
+    private static int compare(int[] x, int[] y) {
+        for (int i = x.length - 1; i >= 0; i--) {
+            if (x[i] != y[i]) {
+                return Integer.compareUnsigned(x[i], y[i]);
+            }
+        }
+        return 0;
+    }
+
+    private static void shiftRight(int[] x, int bits) {
+        int words = bits >>> 5;
+        int shift = bits & 31;
+        if (words > 0) {
+            System.arraycopy(x, words, x, 0, x.length - words);
+            Arrays.fill(x, x.length - words, x.length, 0);
+        }
+        if (shift != 0) {
+            for (int i = 0; i < x.length - 1; i++) {
+                x[i] = (x[i] >>> shift) | (x[i + 1] << (32 - shift));
+            }
+            x[x.length - 1] >>>= shift;
+        }
+    }
+
+    private static int trailingZeros(int[] x) {
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] != 0) {
+                return 32 * i + Integer.numberOfTrailingZeros(x[i]);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isZero(int[] x) {
+        for (int limb : x) {
+            if (limb != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean isOne(int[] x) {
+        if (x[0] != 1) return false;
+        for (int i = 1; i < x.length; i++) {
+            if (x[i] != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,344 @@
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+//ECB framing shared by the block cipher SPIs of EncryptionProvider: buffering of partial blocks across
+//update calls, NoPadding or PKCS5Padding, and the output-size bookkeeping JCA expects.
+//Full blocks are encrypted straight from the caller's array into the caller's array; only a partial block is
+//held back. Heap ByteBuffers take the same path over their backing arrays, and direct buffers go one block at a
+//time through a reused scratch block. Subclasses supply the key schedule and the single-block functions.
+abstract class BlockCipherSpi extends CipherSpi {
+    private final int blockSize;
+    private final byte[] buffer;
+    private final byte[] scratch; // one block, for direct buffers
+    private int buffered;
+    private boolean encrypting;
+    private boolean padding;
+    private boolean initialized;
+
+    BlockCipherSpi(int blockSize) {
+        this.blockSize = blockSize;
+        this.buffer = new byte[blockSize];
+        this.scratch = new byte[blockSize];
+    }
+
+    // Expands the raw key bytes, throws InvalidKeyException for a wrong size
+    abstract void setKey(byte[] key) throws InvalidKeyException;
+
+    abstract void encryptBlock(byte[] in, int inOff, byte[] out, int outOff);
+
+    abstract void decryptBlock(byte[] in, int inOff, byte[] out, int outOff);
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!mode.equalsIgnoreCase("ECB")) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (padding.equalsIgnoreCase("NoPadding")) {
+            this.padding = false;
+        } else if (padding.equalsIgnoreCase("PKCS5Padding")) {
+            this.padding = true;
+        } else {
+            throw new NoSuchPaddingException("Unsupported padding " + padding);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        int total = buffered + inputLen;
+        return encrypting && padding ? (total / blockSize + 1) * blockSize : total;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        return null;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            throw new InvalidKeyException("Key has no raw encoding");
+        }
+        try {
+            setKey(encoded);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+        encrypting = opmode == Cipher.ENCRYPT_MODE || opmode == Cipher.WRAP_MODE;
+        buffered = 0;
+        initialized = true;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("ECB takes no parameters");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("ECB takes no parameters");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] out = new byte[processable(buffered + inputLen)];
+        try {
+            engineUpdate(input, inputOffset, inputLen, out, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        if (!initialized) {
+            throw new IllegalStateException("Cipher not initialized");
+        }
+        int length = processable(buffered + inputLen);
+        if (output.length - outputOffset < length) {
+            throw new ShortBufferException("Output buffer needs " + length + " bytes");
+        }
+        if (input == output && outputOffset > inputOffset && outputOffset < inputOffset + inputLen) {
+            // overlapping in-place call with the output ahead of the input
+            input = Arrays.copyOfRange(input, inputOffset, inputOffset + inputLen);
+            inputOffset = 0;
+        }
+        int written = 0;
+        if (buffered > 0 && length > 0) {
+            int fill = blockSize - buffered;
+            System.arraycopy(input, inputOffset, buffer, buffered, fill);
+            inputOffset += fill;
+            inputLen -= fill;
+            process(buffer, 0, output, outputOffset);
+            buffered = 0;
+            written = blockSize;
+        }
+        for (; written < length; written += blockSize) {
+            process(input, inputOffset, output, outputOffset + written);
+            inputOffset += blockSize;
+            inputLen -= blockSize;
+        }
+        System.arraycopy(input, inputOffset, buffer, buffered, inputLen);
+        buffered += inputLen;
+        return length;
+    }
+
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        if (input.hasArray() && output.hasArray()) {
+            int n = engineUpdate(input.array(), input.arrayOffset() + input.position(), input.remaining(),
+                    output.array(), output.arrayOffset() + output.position());
+            input.position(input.limit());
+            output.position(output.position() + n);
+            return n;
+        }
+        if (!initialized) {
+            throw new IllegalStateException("Cipher not initialized");
+        }
+        int length = processable(buffered + input.remaining());
+        if (output.remaining() < length) {
+            throw new ShortBufferException("Output buffer needs " + length + " bytes");
+        }
+        int written = 0;
+        if (buffered > 0 && length > 0) {
+            input.get(buffer, buffered, blockSize - buffered);
+            process(buffer, 0, output);
+            buffered = 0;
+            written = blockSize;
+        }
+        for (; written < length; written += blockSize) {
+            if (input.hasArray()) {
+                process(input.array(), input.arrayOffset() + input.position(), output);
+                input.position(input.position() + blockSize);
+            } else {
+                input.get(scratch);
+                process(scratch, 0, output);
+            }
+        }
+        int rest = input.remaining();
+        input.get(buffer, buffered, rest);
+        buffered += rest;
+        Arrays.fill(scratch, (byte) 0);
+        return length;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        byte[] out = new byte[engineGetOutputSize(inputLen)];
+        try {
+            int n = engineDoFinal(input, inputOffset, inputLen, out, 0);
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        int needed = encrypting && padding ? engineGetOutputSize(inputLen) : processable(buffered + inputLen);
+        if (output.length - outputOffset < needed) {
+            throw new ShortBufferException("Output buffer needs " + needed + " bytes");
+        }
+        int n = input == null ? 0 : engineUpdate(input, inputOffset, inputLen, output, outputOffset);
+        try {
+            if (encrypting) {
+                if (padding) {
+                    byte pad = (byte) (blockSize - buffered);
+                    Arrays.fill(buffer, buffered, blockSize, pad);
+                    process(buffer, 0, output, outputOffset + n);
+                    return n + blockSize;
+                }
+                if (buffered != 0) {
+                    throw new IllegalBlockSizeException("Input length not a multiple of " + blockSize + " bytes");
+                }
+                return n;
+            }
+            if (!padding) {
+                if (buffered != 0) {
+                    throw new IllegalBlockSizeException("Input length not a multiple of " + blockSize + " bytes");
+                }
+                return n;
+            }
+            if (buffered != blockSize) {
+                throw new IllegalBlockSizeException("Padded input length not a multiple of " + blockSize + " bytes");
+            }
+            byte[] last = new byte[blockSize];
+            process(buffer, 0, last, 0);
+            int pad = last[blockSize - 1] & 0xFF;
+            boolean valid = pad >= 1 && pad <= blockSize;
+            for (int i = blockSize - Math.min(Math.max(pad, 1), blockSize); i < blockSize; i++) {
+                valid &= (last[i] & 0xFF) == pad;
+            }
+            if (!valid) {
+                throw new BadPaddingException("Invalid PKCS5 padding");
+            }
+            if (output.length - outputOffset - n < blockSize - pad) {
+                throw new ShortBufferException("Output buffer needs " + (n + blockSize - pad) + " bytes");
+            }
+            System.arraycopy(last, 0, output, outputOffset + n, blockSize - pad);
+            Arrays.fill(last, (byte) 0);
+            return n + blockSize - pad;
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected byte[] engineWrap(Key key) throws IllegalBlockSizeException, InvalidKeyException {
+        byte[] encoded = KeyWrapping.encode(key);
+        try {
+            return engineDoFinal(encoded, 0, encoded.length);
+        } catch (BadPaddingException e) {
+            throw new InvalidKeyException("Wrapping failed", e);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    @Override
+    protected Key engineUnwrap(byte[] wrappedKey, String wrappedKeyAlgorithm, int wrappedKeyType)
+            throws InvalidKeyException, NoSuchAlgorithmException {
+        byte[] encoded;
+        try {
+            encoded = engineDoFinal(wrappedKey, 0, wrappedKey.length);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new InvalidKeyException("Unwrapping failed", e);
+        }
+        try {
+            return KeyWrapping.decode(encoded, wrappedKeyAlgorithm, wrappedKeyType);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    // The final block (if any) is produced in the scratch block, so the output's backing array is never written
+    // beyond its limit
+    @Override
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        int inputLen = input.remaining();
+        int needed = encrypting && padding ? engineGetOutputSize(inputLen) : processable(buffered + inputLen);
+        if (output.remaining() < needed) {
+            throw new ShortBufferException("Output buffer needs " + needed + " bytes");
+        }
+        int n = engineUpdate(input, output);
+        try {
+            int last = engineDoFinal(null, 0, 0, scratch, 0);
+            if (output.remaining() < last) {
+                throw new ShortBufferException("Output buffer needs " + (n + last) + " bytes");
+            }
+            output.put(scratch, 0, last);
+            return n + last;
+        } finally {
+            Arrays.fill(scratch, (byte) 0);
+        }
+    }
+
+    //bytes an update can emit for the given buffered + new input; padded decryption holds the last block back
+    private int processable(int total) {
+        int full = total - total % blockSize;
+        if (!encrypting && padding && full == total && total > 0) {
+            full -= blockSize;
+        }
+        return full;
+    }
+
+    //one block into output, in place for a heap buffer and through the scratch block for a direct one
+    private void process(byte[] in, int inOff, ByteBuffer output) {
+        if (output.hasArray()) {
+            process(in, inOff, output.array(), output.arrayOffset() + output.position());
+            output.position(output.position() + blockSize);
+        } else {
+            process(in, inOff, scratch, 0);
+            output.put(scratch);
+        }
+    }
+
+    private void process(byte[] in, int inOff, byte[] out, int outOff) {
+        if (encrypting) {
+            encryptBlock(in, inOff, out, outOff);
+        } else {
+            decryptBlock(in, inOff, out, outOff);
+        }
+    }
+}
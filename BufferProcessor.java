@@ -0,0 +1,207 @@
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//One stage of a Flow pipeline of ByteBuffers (read, encrypt, compress, write ...). Subclasses transform buffers in
+//process(); this class does the signalling.
+//
+//Backpressure runs both ways: the stage asks upstream for at most prefetch buffers ahead, transforms a buffer only
+//when downstream has requested one, and asks upstream for more as buffers are passed on. A slow consumer therefore
+//slows every stage before it, and no stage holds more than prefetch + 1 buffers.
+//All processing and downstream signals run on the stage's own executor, serialised by a work-in-progress counter,
+//so process() is never called concurrently and stages overlap like a hardware pipeline.
+//One downstream subscriber.
+public abstract class BufferProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+    private final Executor executor;
+    private final int prefetch;
+    private final int requestBatch;
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super ByteBuffer> downstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    // confined to the drain loop
+    private ByteBuffer pending;
+    private boolean finishing;
+    private boolean terminated;
+    private int consumed;
+
+    protected BufferProcessor(Executor executor, int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("Prefetch must be positive");
+        }
+        this.executor = executor;
+        this.prefetch = prefetch;
+        this.requestBatch = Math.max(1, prefetch / 2);
+    }
+
+    // Transforms one buffer; returns the buffer to pass on (may be the same one) or null to pass nothing on
+    protected abstract ByteBuffer process(ByteBuffer buffer) throws Exception;
+
+    // Called once after upstream completes; returns a last buffer to pass on, or null
+    protected ByteBuffer finish() throws Exception {
+        return null;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Only one subscriber is supported"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Request must be positive"));
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription s = upstream;
+                if (s != null) {
+                    s.cancel();
+                }
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        queue.offer(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void fail(Throwable throwable) {
+        Flow.Subscription s = upstream;
+        if (s != null) {
+            s.cancel();
+        }
+        onError(throwable);
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super ByteBuffer> subscriber = downstream;
+            if (subscriber != null && !terminated) {
+                emit(subscriber);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        while (true) {
+            if (cancelled) {
+                queue.clear();
+                terminated = true;
+                return;
+            }
+            Throwable e = error;
+            if (e != null) {
+                queue.clear();
+                terminated = true;
+                subscriber.onError(e);
+                return;
+            }
+            if (pending == null) {
+                boolean done = upstreamDone; // read before the queue: every item arrives before completion
+                if (queue.isEmpty()) {
+                    if (!done) {
+                        return;
+                    }
+                    if (finishing) {
+                        terminated = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    finishing = true;
+                    try {
+                        pending = finish();
+                    } catch (Exception ex) {
+                        fail(ex);
+                    }
+                    continue;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                ByteBuffer item = queue.poll();
+                try {
+                    pending = process(item);
+                } catch (Exception ex) {
+                    fail(ex);
+                    continue;
+                }
+                if (++consumed == requestBatch) {
+                    consumed = 0;
+                    upstream.request(requestBatch);
+                }
+                continue;
+            }
+            if (demand.get() == 0) {
+                return;
+            }
+            ByteBuffer out = pending;
+            pending = null;
+            demand.decrementAndGet();
+            subscriber.onNext(out);
+        }
+    }
+}
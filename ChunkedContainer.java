@@ -0,0 +1,596 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+//Chunked, seekable encrypted container for large files. The plain text is cut into fixed-size chunks that are
+//encrypted and authenticated independently, so they can be processed in parallel and any byte range can be read
+//back by decrypting only the chunks it touches.
+//
+//Layout (integers big-endian):
+//  header   "ENCC" | version (u8) | cipher (u8) | chunk size (s32) | nonce (16) | HMAC (32) of the preceding 26 bytes
+//  chunks   per chunk: cipher text | HMAC (32) of nonce, chunk number (s64) and cipher text
+//  index    per chunk: offset (s64) | cipher text length (s32) | plain length (s32)
+//  trailer  chunk count (s64) | plain length (s64) | index offset (s64)
+//           | HMAC (32) of nonce, index and the three preceding fields | "ENCI"
+//Every chunk but the last holds exactly chunk size plain bytes. Ciphers per chunk: AES-CTR with the chunk number in
+//the counter block, AES-ECB (PKCS5 padding on the last chunk only), or LFSR with a register derived from the chunk
+//number. The authenticated index makes truncated, reordered or spliced chunks detectable.
+//The MAC key is derived from the master key, and the cipher key from the master key and the nonce, with HMAC-SHA256,
+//so every container has its own cipher key.
+class ChunkedContainer {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final byte[] MAGIC = {'E', 'N', 'C', 'C'};
+    private static final byte[] INDEX_MAGIC = {'E', 'N', 'C', 'I'};
+    private static final byte VERSION = 1;
+    private static final int NONCE_SIZE = 16;
+    private static final int TAG_SIZE = 32;
+    private static final int HEADER_SIZE = 10 + NONCE_SIZE + TAG_SIZE;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int TRAILER_SIZE = 24 + TAG_SIZE + 4;
+    private static final int[] LFSR_POLYNOM = {63, 62};
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    enum Algorithm {
+        AES_CTR, AES_ECB, LFSR;
+
+        byte id() {
+            return (byte) (ordinal() + 1);
+        }
+
+        static Algorithm of(byte id) throws IOException {
+            if (id < 1 || id > values().length) {
+                throw new IOException("Unknown cipher " + id);
+            }
+            return values()[id - 1];
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final int chunkSize;
+    private final byte[] nonce;
+    private final byte[] cipherKey;
+    private final byte[] macKey;
+    private final byte[][] subKeys; // AES-ECB only
+
+    private ChunkedContainer(byte[] masterKey, Algorithm algorithm, int chunkSize, byte[] nonce) {
+        if (masterKey.length < 16) {
+            throw new IllegalArgumentException("Master key must be at least 16 bytes");
+        }
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.nonce = nonce;
+        byte[] label = "ENCC cipher key".getBytes(StandardCharsets.US_ASCII);
+        byte[] keyInput = ByteBuffer.allocate(label.length + NONCE_SIZE).put(label).put(nonce).array();
+        this.cipherKey = Arrays.copyOf(hmac(masterKey, keyInput), AES.KEY_SIZE);
+        this.macKey = hmac(masterKey, "ENCC MAC key".getBytes(StandardCharsets.US_ASCII));
+        this.subKeys = algorithm == Algorithm.AES_ECB ? AES.generateSubKeys(cipherKey) : null;
+    }
+
+    // Encrypts input into a new container at output with threads workers; a partial output is deleted on failure
+    static void encrypt(byte[] masterKey, Path input, Path output, Algorithm algorithm, int chunkSize, int threads)
+            throws IOException {
+        if (chunkSize <= 0 || chunkSize % AES.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of " + AES.BLOCK_SIZE);
+        }
+        byte[] nonce = new byte[NONCE_SIZE];
+        RANDOM.nextBytes(nonce);
+        ChunkedContainer container = new ChunkedContainer(masterKey, algorithm, chunkSize, nonce);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long plainLength = in.size();
+            long chunks = Math.max(1, (plainLength + chunkSize - 1) / chunkSize); // an empty file is one empty chunk
+            if (chunks > (Integer.MAX_VALUE - TRAILER_SIZE) / INDEX_ENTRY_SIZE) {
+                throw new IOException("Too many chunks, use a larger chunk size");
+            }
+            writeMapped(out, 0, container.header(), 0, HEADER_SIZE);
+
+            ByteBuffer index = ByteBuffer.allocate((int) chunks * INDEX_ENTRY_SIZE);
+            long[] position = {HEADER_SIZE};
+            ArrayPool pool = new ArrayPool(chunkSize + AES.BLOCK_SIZE + TAG_SIZE, 2 * threads);
+            runParallel(chunks, threads, number -> {
+                long from = number * chunkSize;
+                int length = (int) Math.min(chunkSize, plainLength - from);
+                boolean last = number == chunks - 1;
+                byte[] plain = pool.acquire();
+                try {
+                    readMapped(in, from, plain, length);
+                    byte[] sealed = pool.acquire();
+                    int cipherLength = container.encryptChunk(number, plain, length, last, sealed);
+                    container.tag(number, sealed, cipherLength, sealed, cipherLength);
+                    return new Chunk(sealed, cipherLength, length);
+                } finally {
+                    Arrays.fill(plain, 0, length, (byte) 0);
+                    pool.release(plain);
+                }
+            }, (number, chunk) -> {
+                writeMapped(out, position[0], chunk.data, 0, chunk.length + TAG_SIZE);
+                index.putLong(position[0]).putInt(chunk.length).putInt(chunk.plainLength);
+                position[0] += chunk.length + TAG_SIZE;
+                pool.release(chunk.data);
+            });
+
+            byte[] trailer = container.trailer(index.array(), chunks, plainLength, position[0]);
+            writeMapped(out, position[0], index.array(), 0, index.capacity());
+            writeMapped(out, position[0] + index.capacity(), trailer, 0, trailer.length);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+    }
+
+    // Decrypts a whole container into output with threads workers; a partial output is deleted on failure
+    static void decrypt(byte[] masterKey, Path input, Path output, int threads) throws IOException {
+        try (Reader reader = open(masterKey, input);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ChunkedContainer container = reader.container;
+            ArrayPool pool = new ArrayPool(container.chunkSize + AES.BLOCK_SIZE + TAG_SIZE, 2 * threads);
+            runParallel(reader.chunks, threads, number -> reader.decryptChunk(number, pool), (number, chunk) -> {
+                writeMapped(out, number * container.chunkSize, chunk.data, 0, chunk.plainLength);
+                Arrays.fill(chunk.data, 0, chunk.plainLength, (byte) 0);
+                pool.release(chunk.data);
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+    }
+
+    // Opens a container for random-access reads; the header, index and trailer are verified here
+    static Reader open(byte[] masterKey, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new Reader(masterKey, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Random access to the plain text of a container. Each read decrypts and verifies the chunks it touches; the
+    // most recently decrypted chunk is kept, so small sequential reads decrypt each chunk once. Not thread-safe.
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final ChunkedContainer container;
+        private final long chunks;
+        private final long plainLength;
+        private final ByteBuffer index;
+        private long cachedNumber = -1;
+        private Chunk cached;
+
+        private Reader(byte[] masterKey, FileChannel channel) throws IOException {
+            this.channel = channel;
+            long size = channel.size();
+            if (size < HEADER_SIZE + INDEX_ENTRY_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a container: too short");
+            }
+            byte[] header = new byte[HEADER_SIZE];
+            readMapped(channel, 0, header, HEADER_SIZE);
+            ByteBuffer fields = ByteBuffer.wrap(header);
+            if (!Arrays.equals(header, 0, 4, MAGIC, 0, 4) || header[4] != VERSION) {
+                throw new IOException("Not a container or unsupported version");
+            }
+            Algorithm algorithm = Algorithm.of(header[5]);
+            int chunkSize = fields.getInt(6);
+            if (chunkSize <= 0 || chunkSize % AES.BLOCK_SIZE != 0) {
+                throw new IOException("Bad chunk size " + chunkSize);
+            }
+            container = new ChunkedContainer(masterKey, algorithm, chunkSize,
+                    Arrays.copyOfRange(header, 10, 10 + NONCE_SIZE));
+            if (!MessageDigest.isEqual(container.header(), header)) {
+                throw new IOException("Header authentication failed (wrong key?)");
+            }
+
+            byte[] trailer = new byte[TRAILER_SIZE];
+            readMapped(channel, size - TRAILER_SIZE, trailer, TRAILER_SIZE);
+            ByteBuffer end = ByteBuffer.wrap(trailer);
+            chunks = end.getLong(0);
+            plainLength = end.getLong(8);
+            long indexOffset = end.getLong(16);
+            if (!Arrays.equals(trailer, TRAILER_SIZE - 4, TRAILER_SIZE, INDEX_MAGIC, 0, 4)
+                    || chunks < 1 || chunks > (size - HEADER_SIZE) / (TAG_SIZE + INDEX_ENTRY_SIZE)
+                    || indexOffset + chunks * INDEX_ENTRY_SIZE + TRAILER_SIZE != size) {
+                throw new IOException("Corrupt or truncated container trailer");
+            }
+            byte[] indexBytes = new byte[(int) chunks * INDEX_ENTRY_SIZE];
+            readMapped(channel, indexOffset, indexBytes, indexBytes.length);
+            if (!MessageDigest.isEqual(container.trailer(indexBytes, chunks, plainLength, indexOffset), trailer)) {
+                throw new IOException("Index authentication failed");
+            }
+            index = ByteBuffer.wrap(indexBytes);
+            checkIndex(indexOffset);
+        }
+
+        //the index is authenticated, but must also be consistent with the format before it is used for seeking
+        private void checkIndex(long indexOffset) throws IOException {
+            long offset = HEADER_SIZE;
+            long total = 0;
+            for (long number = 0; number < chunks; number++) {
+                boolean last = number == chunks - 1;
+                int cipherLength = cipherLength(number);
+                int plain = plainLength(number);
+                if (offset(number) != offset || (last ? plain > container.chunkSize : plain != container.chunkSize)
+                        || cipherLength != container.cipherLength(plain, last)) {
+                    throw new IOException("Inconsistent index entry for chunk " + number);
+                }
+                offset += cipherLength + TAG_SIZE;
+                total += plain;
+            }
+            if (offset != indexOffset || total != plainLength) {
+                throw new IOException("Index does not cover the container");
+            }
+        }
+
+        long length() {
+            return plainLength;
+        }
+
+        long chunkCount() {
+            return chunks;
+        }
+
+        // Reads up to len plain bytes at position into dst; returns the number read, -1 at the end
+        int read(long position, byte[] dst, int off, int len) throws IOException {
+            if (position < 0 || off < 0 || len < 0 || len > dst.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (position >= plainLength) {
+                return len == 0 ? 0 : -1;
+            }
+            int total = (int) Math.min(len, plainLength - position);
+            int done = 0;
+            while (done < total) {
+                long number = (position + done) / container.chunkSize;
+                int within = (int) ((position + done) % container.chunkSize);
+                if (number != cachedNumber) {
+                    if (cached != null) {
+                        Arrays.fill(cached.data, (byte) 0);
+                    }
+                    cached = decryptChunk(number, null);
+                    cachedNumber = number;
+                }
+                int n = Math.min(total - done, cached.plainLength - within);
+                System.arraycopy(cached.data, within, dst, off + done, n);
+                done += n;
+            }
+            return total;
+        }
+
+        //verifies and decrypts one chunk into a buffer from pool (a new array when pool is null)
+        private Chunk decryptChunk(long number, ArrayPool pool) throws IOException {
+            int cipherLength = cipherLength(number);
+            int bufferSize = container.chunkSize + AES.BLOCK_SIZE + TAG_SIZE;
+            byte[] sealed = pool == null ? new byte[bufferSize] : pool.acquire();
+            try {
+                readMapped(channel, offset(number), sealed, cipherLength + TAG_SIZE);
+                byte[] expected = new byte[TAG_SIZE];
+                container.tag(number, sealed, cipherLength, expected, 0);
+                if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(sealed, cipherLength, cipherLength + TAG_SIZE))) {
+                    throw new IOException("Chunk " + number + " failed authentication");
+                }
+                byte[] plain = pool == null ? new byte[bufferSize] : pool.acquire();
+                int length = container.decryptChunk(number, sealed, cipherLength, number == chunks - 1, plain);
+                if (length != plainLength(number)) {
+                    throw new IOException("Chunk " + number + " has the wrong length");
+                }
+                return new Chunk(plain, cipherLength, length);
+            } finally {
+                if (pool != null) {
+                    pool.release(sealed);
+                }
+            }
+        }
+
+        private long offset(long number) {
+            return index.getLong((int) number * INDEX_ENTRY_SIZE);
+        }
+
+        private int cipherLength(long number) {
+            return index.getInt((int) number * INDEX_ENTRY_SIZE + 8);
+        }
+
+        private int plainLength(long number) {
+            return index.getInt((int) number * INDEX_ENTRY_SIZE + 12);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cached != null) {
+                Arrays.fill(cached.data, (byte) 0);
+            }
+            channel.close();
+        }
+    }
+
+    private byte[] header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put(VERSION).put(algorithm.id()).putInt(chunkSize).put(nonce);
+        Mac mac = mac();
+        mac.update(header.array(), 0, header.position());
+        header.put(mac.doFinal());
+        return header.array();
+    }
+
+    private byte[] trailer(byte[] index, long chunks, long plainLength, long indexOffset) {
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        trailer.putLong(chunks).putLong(plainLength).putLong(indexOffset);
+        Mac mac = mac();
+        mac.update(nonce);
+        mac.update(index);
+        mac.update(trailer.array(), 0, trailer.position());
+        trailer.put(mac.doFinal()).put(INDEX_MAGIC);
+        return trailer.array();
+    }
+
+    //writes the HMAC of nonce, chunk number and data[0 .. len) to out at outOff
+    private void tag(long number, byte[] data, int len, byte[] out, int outOff) {
+        Mac mac = mac();
+        mac.update(nonce);
+        mac.update(ByteBuffer.allocate(8).putLong(0, number));
+        mac.update(data, 0, len);
+        try {
+            mac.doFinal(out, outOff);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int cipherLength(int plainLength, boolean last) {
+        return algorithm == Algorithm.AES_ECB && last ? plainLength / AES.BLOCK_SIZE * AES.BLOCK_SIZE + AES.BLOCK_SIZE
+                : plainLength;
+    }
+
+    //encrypts in[0 .. len) of one chunk into out, returns the cipher text length
+    private int encryptChunk(long number, byte[] in, int len, boolean last, byte[] out) {
+        switch (algorithm) {
+            case AES_CTR:
+                return new AESCTR(cipherKey, counterBlock(number)).update(in, 0, len, out, 0);
+            case LFSR:
+                return new LFSR(register(number), LFSR_POLYNOM).update(in, 0, len, out, 0);
+            default:
+                int cipherLength = cipherLength(len, last);
+                byte pad = (byte) (cipherLength - len);
+                Arrays.fill(in, len, cipherLength, pad);
+                for (int i = 0; i < cipherLength; i += AES.BLOCK_SIZE) {
+                    AES.encryptBlock(in, i, out, i, subKeys);
+                }
+                return cipherLength;
+        }
+    }
+
+    //decrypts in[0 .. len) of one chunk into out, returns the plain text length
+    private int decryptChunk(long number, byte[] in, int len, boolean last, byte[] out) throws IOException {
+        switch (algorithm) {
+            case AES_CTR:
+                return new AESCTR(cipherKey, counterBlock(number)).update(in, 0, len, out, 0);
+            case LFSR:
+                return new LFSR(register(number), LFSR_POLYNOM).update(in, 0, len, out, 0);
+            default:
+                for (int i = 0; i < len; i += AES.BLOCK_SIZE) {
+                    AES.decryptBlock(in, i, out, i, subKeys);
+                }
+                if (!last) {
+                    return len;
+                }
+                int pad = out[len - 1] & 0xFF;
+                if (pad < 1 || pad > AES.BLOCK_SIZE) {
+                    throw new IOException("Chunk " + number + " has bad padding");
+                }
+                return len - pad;
+        }
+    }
+
+    //nonce[0 .. 4) | chunk number (8) | block counter (4): unique within a container for chunks of up to 64 GiB.
+    //Across containers the nonce prefix may repeat, which is safe only because each container has its own cipher key
+    private byte[] counterBlock(long number) {
+        return ByteBuffer.allocate(AES.BLOCK_SIZE).put(nonce, 0, 4).putLong(number).array();
+    }
+
+    //nonzero 63-bit register from HMAC(cipher key, nonce | chunk number)
+    private long register(long number) {
+        byte[] input = ByteBuffer.allocate(NONCE_SIZE + 8).put(nonce).putLong(number).array();
+        return (ByteBuffer.wrap(hmac(cipherKey, input)).getLong() & Long.MAX_VALUE) | 1;
+    }
+
+    private Mac mac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static void readMapped(FileChannel channel, long position, byte[] dst, int len) throws IOException {
+        if (len > 0) {
+            channel.map(FileChannel.MapMode.READ_ONLY, position, len).get(dst, 0, len);
+        }
+    }
+
+    private static void writeMapped(FileChannel channel, long position, byte[] src, int off, int len) throws IOException {
+        if (len > 0) {
+            channel.map(FileChannel.MapMode.READ_WRITE, position, len).put(src, off, len);
+        }
+    }
+
+    //chunk-sized arrays reused across chunks; at most maximumPooled are kept
+    private static final class ArrayPool {
+        private final int size;
+        private final ArrayBlockingQueue<byte[]> free;
+
+        ArrayPool(int size, int maximumPooled) {
+            this.size = size;
+            this.free = new ArrayBlockingQueue<>(maximumPooled);
+        }
+
+        byte[] acquire() {
+            byte[] array = free.poll();
+            return array != null ? array : new byte[size];
+        }
+
+        void release(byte[] array) {
+            free.offer(array);
+        }
+    }
+
+    //one processed chunk: data[0 .. length) is the cipher text (followed by its tag when encrypting), or the
+    //plain text when decrypting
+    private static final class Chunk {
+        final byte[] data;
+        final int length;
+        final int plainLength;
+
+        Chunk(byte[] data, int length, int plainLength) {
+            this.data = data;
+            this.length = length;
+            this.plainLength = plainLength;
+        }
+    }
+
+    private interface ChunkTask {
+        Chunk process(long number) throws IOException;
+    }
+
+    private interface ChunkSink {
+        void write(long number, Chunk chunk) throws IOException;
+    }
+
+    //processes chunks 0 .. count-1 on a pool of threads and passes the results to sink in order. At most 2 * threads
+    //chunks are in flight, so memory stays bounded for any file size.
+    private static void runParallel(long count, int threads, ChunkTask task, ChunkSink sink) throws IOException {
+        int window = 2 * threads;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ReorderBuffer<Object> reorder = new ReorderBuffer<>(window);
+        try {
+            for (long number = 0; number < Math.min(count, window); number++) {
+                submit(pool, reorder, task, number);
+            }
+            for (long number = 0; number < count; number++) {
+                Object result = reorder.take();
+                if (number + window < count) {
+                    submit(pool, reorder, task, number + window);
+                }
+                if (result instanceof IOException) {
+                    throw (IOException) result;
+                }
+                if (result instanceof RuntimeException) {
+                    throw (RuntimeException) result;
+                }
+                sink.write(number, (Chunk) result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing chunks");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void submit(ExecutorService pool, ReorderBuffer<Object> reorder, ChunkTask task, long number) {
+        pool.execute(() -> {
+            Object result;
+            try {
+                result = task.process(number);
+            } catch (IOException | RuntimeException e) {
+                result = e;
+            }
+            try {
+                reorder.put(number, result);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    //  java ChunkedContainer keygen <key file>
+    //  java ChunkedContainer encrypt <key file> <input> <container> [aes-ctr|aes-ecb|lfsr] [chunk size] [threads]
+    //  java ChunkedContainer decrypt <key file> <container> <output> [threads]
+    //  java ChunkedContainer read <key file> <container> <offset> <length>     (plain bytes to stdout)
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ChunkedContainer keygen|encrypt|decrypt|read <key file> ...");
+            System.exit(2);
+        }
+        Path keyFile = Path.of(args[1]);
+        int processors = Runtime.getRuntime().availableProcessors();
+        switch (args[0]) {
+            case "keygen": {
+                byte[] key = new byte[32];
+                RANDOM.nextBytes(key);
+                Files.write(keyFile, key);
+                break;
+            }
+            case "encrypt": {
+                Algorithm algorithm = args.length > 4
+                        ? Algorithm.valueOf(args[4].toUpperCase().replace('-', '_')) : Algorithm.AES_CTR;
+                int chunkSize = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_CHUNK_SIZE;
+                int threads = args.length > 6 ? Integer.parseInt(args[6]) : processors;
+                long start = System.nanoTime();
+                encrypt(Files.readAllBytes(keyFile), Path.of(args[2]), Path.of(args[3]), algorithm, chunkSize, threads);
+                report(Files.size(Path.of(args[2])), start);
+                break;
+            }
+            case "decrypt": {
+                int threads = args.length > 4 ? Integer.parseInt(args[4]) : processors;
+                long start = System.nanoTime();
+                decrypt(Files.readAllBytes(keyFile), Path.of(args[2]), Path.of(args[3]), threads);
+                report(Files.size(Path.of(args[3])), start);
+                break;
+            }
+            case "read": {
+                long position = Long.parseLong(args[3]);
+                long remaining = Long.parseLong(args[4]);
+                byte[] buffer = new byte[64 * 1024];
+                OutputStream out = System.out;
+                try (Reader reader = open(Files.readAllBytes(keyFile), Path.of(args[2]))) {
+                    int n;
+                    while (remaining > 0 && (n = reader.read(position, buffer, 0,
+                            (int) Math.min(buffer.length, remaining))) > 0) {
+                        out.write(buffer, 0, n);
+                        position += n;
+                        remaining -= n;
+                    }
+                }
+                out.flush();
+                break;
+            }
+            default:
+                System.err.println("Unknown command " + args[0]);
+                System.exit(2);
+        }
+    }
+
+    private static void report(long bytes, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d bytes in %.2f s (%.1f MB/s)%n", bytes, seconds, bytes / seconds / 1e6);
+    }
+}
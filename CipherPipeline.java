@@ -0,0 +1,361 @@
+import codec.TextCodec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import memory.BufferArena;
+
+//Backpressured streaming encryption with java.util.concurrent.Flow: a channel source, BufferProcessor stages and a
+//channel sink, each on its own executor. Memory use is bounded by the stages' prefetch, whatever the stream length.
+//
+//  encrypt: file -> Source -> DeflateStage -> CipherProcessor -> Sink -> file
+//  decrypt: file -> Source -> CipherProcessor -> InflateStage -> Sink -> file
+//
+//Compression comes before encryption because cipher text does not compress.
+//
+//  java CipherPipeline encrypt|decrypt <key hex> <input> <output> [aes-ctr|lfsr]
+//AES-CTR takes a 16-byte key and writes a random IV in front of the output; LFSR takes an 8-byte register.
+public final class CipherPipeline {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PREFETCH = 4;
+    private static final int[] LFSR_POLYNOM = {63, 62};
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private CipherPipeline() {
+    }
+
+    // Publishes the contents of a channel as arena buffers of bufferSize bytes, reading only as far ahead as the subscriber asks
+    public static final class Source implements Flow.Publisher<ByteBuffer> {
+        private final ReadableByteChannel channel;
+        private final BufferArena arena;
+        private final int bufferSize;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile Flow.Subscriber<? super ByteBuffer> subscriber;
+        private volatile boolean cancelled;
+        private boolean done;
+
+        public Source(ReadableByteChannel channel, BufferArena arena, int bufferSize, Executor executor) {
+            this.channel = channel;
+            this.arena = arena;
+            this.bufferSize = bufferSize;
+            this.executor = executor;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            if (this.subscriber != null) {
+                throw new IllegalStateException("Only one subscriber is supported");
+            }
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    demand.getAndAccumulate(Math.max(n, 0), (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                    drain();
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(() -> {
+                    int missed = 1;
+                    do {
+                        read();
+                        missed = wip.addAndGet(-missed);
+                    } while (missed != 0);
+                });
+            }
+        }
+
+        private void read() {
+            while (!done && !cancelled && demand.get() > 0) {
+                ByteBuffer buffer = arena.allocate(bufferSize);
+                boolean eof = false;
+                try {
+                    while (buffer.hasRemaining() && !eof) {
+                        eof = channel.read(buffer) < 0;
+                    }
+                } catch (IOException e) {
+                    done = true;
+                    arena.release(buffer);
+                    subscriber.onError(e);
+                    return;
+                }
+                buffer.flip();
+                if (buffer.hasRemaining()) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(buffer);
+                } else {
+                    arena.release(buffer);
+                }
+                if (eof) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+            }
+        }
+    }
+
+    // Writes every buffer to a channel, hands it to recycle and asks for the next; completion() reports bytes written
+    public static final class Sink implements Flow.Subscriber<ByteBuffer> {
+        private final WritableByteChannel channel;
+        private final Consumer<ByteBuffer> recycle;
+        private final Executor executor;
+        private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final CompletableFuture<Long> completion = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean upstreamDone;
+        private long written;
+
+        public Sink(WritableByteChannel channel, Consumer<ByteBuffer> recycle, Executor executor) {
+            this.channel = channel;
+            this.recycle = recycle;
+            this.executor = executor;
+        }
+
+        public CompletableFuture<Long> completion() {
+            return completion;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(PREFETCH);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            queue.offer(item);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(() -> {
+                    int missed = 1;
+                    do {
+                        write();
+                        missed = wip.addAndGet(-missed);
+                    } while (missed != 0);
+                });
+            }
+        }
+
+        private void write() {
+            while (!completion.isDone()) {
+                boolean done = upstreamDone;
+                ByteBuffer buffer = queue.poll();
+                if (buffer == null) {
+                    if (done) {
+                        completion.complete(written);
+                    }
+                    return;
+                }
+                try {
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    subscription.cancel();
+                    completion.completeExceptionally(e);
+                    return;
+                }
+                recycle.accept(buffer);
+                subscription.request(1);
+            }
+        }
+    }
+
+    // Deflate compression; input buffers go back to recycle once consumed
+    public static final class DeflateStage extends BufferProcessor {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final Consumer<ByteBuffer> recycle;
+
+        public DeflateStage(Consumer<ByteBuffer> recycle, Executor executor, int prefetch) {
+            super(executor, prefetch);
+            this.recycle = recycle;
+        }
+
+        @Override
+        protected ByteBuffer process(ByteBuffer buffer) {
+            deflater.setInput(buffer);
+            ByteBuffer out = ByteBuffer.allocate(buffer.remaining() / 2 + 64);
+            while (!deflater.needsInput()) {
+                out = ensureRemaining(out);
+                deflater.deflate(out);
+            }
+            deflater.setInput(EMPTY); // the deflater keeps a reference to its input, and recycling clears it
+            recycle.accept(buffer);
+            return out.position() == 0 ? null : out.flip();
+        }
+
+        @Override
+        protected ByteBuffer finish() {
+            deflater.finish();
+            ByteBuffer out = ByteBuffer.allocate(4096);
+            while (!deflater.finished()) {
+                out = ensureRemaining(out);
+                deflater.deflate(out);
+            }
+            deflater.end();
+            return out.flip();
+        }
+    }
+
+    // Inflate decompression; input buffers go back to recycle once consumed
+    public static final class InflateStage extends BufferProcessor {
+        private final Inflater inflater = new Inflater();
+        private final Consumer<ByteBuffer> recycle;
+
+        public InflateStage(Consumer<ByteBuffer> recycle, Executor executor, int prefetch) {
+            super(executor, prefetch);
+            this.recycle = recycle;
+        }
+
+        @Override
+        protected ByteBuffer process(ByteBuffer buffer) throws DataFormatException {
+            inflater.setInput(buffer);
+            ByteBuffer out = ByteBuffer.allocate(2 * buffer.remaining() + 64);
+            while (!inflater.needsInput() && !inflater.finished()) {
+                out = ensureRemaining(out);
+                inflater.inflate(out);
+                if (inflater.needsDictionary()) {
+                    throw new DataFormatException("Preset dictionaries are not supported");
+                }
+            }
+            inflater.setInput(EMPTY);
+            recycle.accept(buffer);
+            return out.position() == 0 ? null : out.flip();
+        }
+
+        @Override
+        protected ByteBuffer finish() throws IOException {
+            boolean complete = inflater.finished();
+            inflater.end();
+            if (!complete) {
+                throw new IOException("Compressed stream is truncated");
+            }
+            return null;
+        }
+    }
+
+    //doubles a full buffer, keeping its contents
+    private static ByteBuffer ensureRemaining(ByteBuffer out) {
+        if (out.hasRemaining()) {
+            return out;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(2 * out.capacity());
+        return bigger.put(out.flip());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: CipherPipeline encrypt|decrypt <key hex> <input> <output> [aes-ctr|lfsr]");
+            System.exit(2);
+        }
+        boolean encrypt = args[0].equals("encrypt");
+        byte[] key = TextCodec.fromHex(args[1]);
+        boolean lfsr = args.length > 4 && args[4].equalsIgnoreCase("lfsr");
+        List<ExecutorService> executors = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            executors.add(Executors.newSingleThreadExecutor());
+        }
+        BufferArena arena = BufferArena.shared();
+        Consumer<ByteBuffer> release = buffer -> {
+            if (buffer.isDirect()) {
+                arena.release(buffer);
+            }
+        };
+
+        long start = System.nanoTime();
+        try (FileChannel in = FileChannel.open(Path.of(args[2]), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(Path.of(args[3]), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ContinuousStreamCipher cipher;
+            if (lfsr) {
+                long register = key.length == 8 ? ByteBuffer.wrap(key).getLong() & Long.MAX_VALUE : 0;
+                if (key.length != 8 || register == 0) {
+                    throw new IllegalArgumentException("LFSR key must be 8 bytes and not all zero");
+                }
+                cipher = new LFSR(register, LFSR_POLYNOM);
+            } else {
+                ByteBuffer iv = ByteBuffer.allocate(AES.BLOCK_SIZE);
+                if (encrypt) {
+                    new SecureRandom().nextBytes(iv.array());
+                    out.write(iv.duplicate());
+                } else {
+                    while (iv.hasRemaining() && in.read(iv) >= 0) {
+                        // the IV is the first block of the input
+                    }
+                    if (iv.hasRemaining()) {
+                        throw new IOException("Input too short for the IV");
+                    }
+                }
+                cipher = new AESCTR(key, iv.array());
+            }
+
+            Source source = new Source(in, arena, BUFFER_SIZE, executors.get(0));
+            BufferProcessor first;
+            BufferProcessor second;
+            if (encrypt) {
+                first = new DeflateStage(release, executors.get(1), PREFETCH);
+                second = new CipherProcessor(cipher, executors.get(2), PREFETCH);
+            } else {
+                first = new CipherProcessor(cipher, executors.get(1), PREFETCH);
+                second = new InflateStage(release, executors.get(2), PREFETCH);
+            }
+            Sink sink = new Sink(out, release, executors.get(3));
+            source.subscribe(first);
+            first.subscribe(second);
+            second.subscribe(sink);
+            long written = sink.completion().get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d -> %d bytes in %.2f s (%.1f MB/s read)%n", in.size(), written, seconds,
+                    in.size() / seconds / 1e6);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            executors.forEach(ExecutorService::shutdown);
+        }
+    }
+}
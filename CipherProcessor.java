@@ -0,0 +1,21 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+//Flow stage that runs a stream of buffers through a ContinuousStreamCipher (LFSR, AESCTR). The keystream continues from one
+//buffer to the next, so a message of any length is encrypted piece by piece exactly as in one call; the same stage
+//with the same key decrypts. Buffers are transformed in place and passed on, so the stage allocates nothing; they
+//must be writable.
+public final class CipherProcessor extends BufferProcessor {
+    private final ContinuousStreamCipher cipher;
+
+    public CipherProcessor(ContinuousStreamCipher cipher, Executor executor, int prefetch) {
+        super(executor, prefetch);
+        this.cipher = cipher;
+    }
+
+    @Override
+    protected ByteBuffer process(ByteBuffer buffer) {
+        cipher.update(buffer.duplicate(), buffer.duplicate());
+        return buffer;
+    }
+}
@@ -0,0 +1,13 @@
+import java.nio.ByteBuffer;
+
+//A StreamCipher whose keystream can continue across calls, for messages processed piece by piece (CipherProcessor,
+//CipherPipeline). Kept apart from StreamCipher so that existing implementers of StreamCipher keep compiling.
+public interface ContinuousStreamCipher extends StreamCipher {
+    // update() continues the keystream across calls, where encrypt and decrypt start again from the key; XORing is
+    // its own inverse, so the same calls decrypt. reset() goes back to the start of the keystream.
+    int update(byte[] in, int inOff, int len, byte[] out, int outOff);
+
+    int update(ByteBuffer in, ByteBuffer out);
+
+    void reset();
+}
@@ -0,0 +1,76 @@
+import codec.TextCodec;
+import desimplementation.Encryption;
+import java.security.InvalidKeyException;
+
+//JCA CipherSpi for "DES" and "DESede" (ECB, NoPadding or PKCS5Padding) over desimplementation.Encryption.
+//Triple DES is encrypt-decrypt-encrypt with three keys (a 16-byte key means k3 = k1).
+//The DES engine works on binary strings, so each block is converted to bits and back here.
+public class DESCipherSpi extends BlockCipherSpi {
+    private static final int BLOCK_SIZE = 8;
+
+    private final Encryption des = new Encryption();
+    private final boolean triple;
+    private String[][] roundKeys; // one schedule per DES key
+
+    DESCipherSpi(boolean triple) {
+        super(BLOCK_SIZE);
+        this.triple = triple;
+    }
+
+    public static final class Single extends DESCipherSpi {
+        public Single() {
+            super(false);
+        }
+    }
+
+    public static final class TripleDES extends DESCipherSpi {
+        public TripleDES() {
+            super(true);
+        }
+    }
+
+    @Override
+    void setKey(byte[] key) throws InvalidKeyException {
+        if (!triple) {
+            if (key.length != 8) {
+                throw new InvalidKeyException("DES key must be 8 bytes");
+            }
+            roundKeys = new String[][]{des.generateRoundKeys(bits(key, 0))};
+            return;
+        }
+        if (key.length != 16 && key.length != 24) {
+            throw new InvalidKeyException("DESede key must be 16 or 24 bytes");
+        }
+        roundKeys = new String[][]{
+                des.generateRoundKeys(bits(key, 0)),
+                des.generateRoundKeys(bits(key, 8)),
+                des.generateRoundKeys(bits(key, key.length == 24 ? 16 : 0))};
+    }
+
+    @Override
+    void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        String block = des.encryptBlock(bits(in, inOff), roundKeys[0]);
+        if (triple) {
+            block = des.encryptBlock(des.decryptBlock(block, roundKeys[1]), roundKeys[2]);
+        }
+        bytes(block, out, outOff);
+    }
+
+    @Override
+    void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        String block = bits(in, inOff);
+        if (triple) {
+            block = des.encryptBlock(des.decryptBlock(block, roundKeys[2]), roundKeys[1]);
+        }
+        bytes(des.decryptBlock(block, roundKeys[0]), out, outOff);
+    }
+
+    //64 bits of a block, most significant bit first
+    private static String bits(byte[] data, int off) {
+        return TextCodec.toBinary(data, off, BLOCK_SIZE);
+    }
+
+    private static void bytes(String bits, byte[] out, int outOff) {
+        TextCodec.decodeBinary(bits, 0, 8 * BLOCK_SIZE, out, outOff);
+    }
+}
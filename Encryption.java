@@ -1,14 +1,24 @@
 package desimplementation;
 
+import cache.KeyScheduleCache;
+import codec.TextCodec;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
+import metrics.CipherMetrics;
+import metrics.LatencyHistogram;
 
 public class Encryption {
 
+    private static final CipherMetrics.Counter ENCRYPTED = CipherMetrics.counter("DES", "encrypt");
+    private static final CipherMetrics.Counter DECRYPTED = CipherMetrics.counter("DES", "decrypt");
+    private static final LatencyHistogram BLOCK_LATENCY = CipherMetrics.histogram("DES", "block");
+    private static final LatencyHistogram KEY_SETUP_LATENCY = CipherMetrics.histogram("DES", "key-setup");
+
     Scanner userInput = new Scanner(System.in);
     PrintWriter pw = new PrintWriter(System.out, true);
     String[] RoundKeyArray = new String[16];
-    String[] Keys = new String[16];
     String permutatedKey = "";
     String plainTextBinary = "";
     String finalResult = "";
@@ -17,7 +27,6 @@ public class Encryption {
     int leftSpace;
     String decipher = "";
     String binaryDecipher = "";
-    String RoundKey = "";
     String originalKey = "";
     int[] NumLeftShifts = {1, 1, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 1};
 
@@ -115,6 +124,8 @@ public class Encryption {
         {7, 11, 4, 1, 9, 12, 14, 2, 0, 6, 10, 13, 15, 3, 5, 8},
         {2, 1, 14, 7, 4, 10, 8, 13, 15, 12, 9, 0, 3, 5, 6, 11}};
 
+    int[][][] SBoxes = {S1, S2, S3, S4, S5, S6, S7, S8};
+
     int[] P = {16, 7, 20, 21,
         29, 12, 28, 17,
         1, 15, 23, 26,
@@ -141,37 +152,12 @@ public class Encryption {
             //Key should be atleast 8 characters long
 
             /*Get the 56-bit permutation from the original key using PC-1*/
-            for (int i : PC1) {
-                permutatedKey += binaryKey.charAt(i - 1);
-            }
+            permutatedKey = permute(binaryKey, PC1);
             pw.println("56 bit Original key:    " + permutatedKey.replaceAll("(.{8})(?!$)", "$1 "));
-
-            /* Next, split this key into left and right halves, LK and RK, where each half has 28 bits. */
-            String LK = permutatedKey.substring(0, 28);
-            String RK = permutatedKey.substring(28, 56);
-
-            /* Now, perform 16 left circular shifts from the original LK and RK */
-            String Lkey = LK;
-            String Rkey = RK;
             pw.println();
-            int Index = 0;
-            for (int a : NumLeftShifts) {
-                Lkey = CircularLeftShift(Lkey, a);
-                Rkey = CircularLeftShift(Rkey, a);
-                Keys[Index] = Lkey + Rkey;
-                Index++;
-            }
 
-            /* Then build the 16 48-bit sub keys using the PC-2 Permutation table */
-            Index = 0;
-            for (String key : Keys) {
-                for (int j : PC2) {
-                    RoundKey += key.charAt(j - 1);
-                }
-                RoundKeyArray[Index] = RoundKey;
-                Index++;
-                RoundKey = "";
-            }
+            /* Then build the 16 48-bit sub keys: 16 left circular shifts of the two 28-bit halves, each through PC-2 */
+            RoundKeyArray = generateRoundKeys(binaryKey);
 
             /******************************************** 2.ENCODE  MESSAGE **************************************************
              ****************************************************************************************************************/
@@ -204,10 +190,7 @@ public class Encryption {
                     }
                     
                     /* Make an Initial Permutation on the plain text */
-                    String IPBinary = "";
-                    for (int i : IP) {
-                        IPBinary += plainTextBinary.charAt(i - 1);
-                    }
+                    String IPBinary = permute(plainTextBinary, IP);
 
                     /* Divide the permuted block into two halves of 32 bits */
                     String LeftIPBinary = IPBinary.substring(0, 32);
@@ -225,85 +208,8 @@ public class Encryption {
                         String LeftBlock = RightIPBinary;
                         pw.println("LEFT BLOCK  = " + LeftBlock);
 
-                        //Right block is previous left block XOR F(previous left block, round key)
-                        //To calculate Right block we first expand 32 bit previous right block to 48 bits since the key is 48 bits
-                        String expand = "";
-                        for (int i : E) {
-                            expand += RightIPBinary.charAt(i - 1);
-                            //Each block of 4 original bits has been expanded to a block of 6 output bits
-                        }
-
-                        //XOR 'expand' and the key since they are now both 48 bits long
-                        StringBuilder sb = new StringBuilder();
-                        for (int i = 0; i < k.length(); i++) {
-                            sb.append((k.charAt(i) ^ expand.charAt(i)));
-                        }
-                        String result = sb.toString();         
-
-                        //"S boxes": 8 groups of six bits return as 4 bits in order for the Left block to regain its original 32 bits size
-                        //String binary = String.format("%8s", Integer.toBinaryString(currentByte)).replace(' ', '0');
-                        String RB1 = result.substring(0, 6);
-                        String row1 = String.valueOf(RB1.substring(0, 1) + RB1.substring(5, 6));
-                        String col1 = String.valueOf(RB1.substring(1, 5));
-                        int target = S1[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        String binaryTarget = String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB2 = result.substring(6, 12);
-                        row1 = String.valueOf(RB2.substring(0, 1) + RB2.substring(5, 6));
-                        col1 = String.valueOf(RB2.substring(1, 5));
-                        target = S2[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB3 = result.substring(12, 18);
-                        row1 = String.valueOf(RB3.substring(0, 1) + RB3.substring(5, 6));
-                        col1 = String.valueOf(RB3.substring(1, 5));
-                        target = S3[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB4 = result.substring(18, 24);
-                        row1 = String.valueOf(RB4.substring(0, 1) + RB4.substring(5, 6));
-                        col1 = String.valueOf(RB4.substring(1, 5));
-                        target = S4[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB5 = result.substring(24, 30);
-                        row1 = String.valueOf(RB5.substring(0, 1) + RB5.substring(5, 6));
-                        col1 = String.valueOf(RB5.substring(1, 5));
-                        target = S5[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB6 = result.substring(30, 36);
-                        row1 = String.valueOf(RB6.substring(0, 1) + RB6.substring(5, 6));
-                        col1 = String.valueOf(RB6.substring(1, 5));
-                        target = S6[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB7 = result.substring(36, 42);
-                        row1 = String.valueOf(RB7.substring(0, 1) + RB7.substring(5, 6));
-                        col1 = String.valueOf(RB7.substring(1, 5));
-                        target = S7[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                        String RB8 = result.substring(42, 48);
-                        row1 = String.valueOf(RB8.substring(0, 1) + RB8.substring(5, 6));
-                        col1 = String.valueOf(RB8.substring(1, 5));
-                        target = S8[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                        binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-                        //pw.println(binaryTarget);
-
-                        //Lastly,to get f, permutate the output of the S-box(binaryTarget) using table P to obtain the final value 
-                        String function = "";
-                        for (int d : P) {
-                            function += binaryTarget.charAt(d - 1);
-                        }
-
-                        //Finally, Previous Left block XOR function value
-                        sb = new StringBuilder();
-                        for (int i = 0; i < LeftIPBinary.length(); i++) {
-                            sb.append((LeftIPBinary.charAt(i) ^ function.charAt(i)));
-                        }
-                        result = sb.toString();
-
+                        //Right block is previous left block XOR F(previous right block, round key)
+                        String result = xor(LeftIPBinary, f(RightIPBinary, k));
                         RightIPBinary = result;
                         pw.println("RIGHT BLOCK = " + RightIPBinary);
                         result = "";
@@ -313,12 +219,10 @@ public class Encryption {
                             // Reversely combine the two blocks to form a 64-bit block
                             result = RightIPBinary + LeftBlock;
                             
-                            finalResult = "";
                             //Final Permutation FP: The Inverse of the Initial permutation IP
-                            for (int x : FP) {
-                                finalResult += result.charAt(x - 1);
-                            }
+                            finalResult = permute(result, FP);
                             encipher += finalResult;
+                            ENCRYPTED.record(8);
                             textEncipher += id == 1 && leftSpace != 0 ? intTostr(finalResult, 8).substring(leftSpace) : intTostr(finalResult, 8);  
                         }
                         LeftIPBinary = LeftBlock;
@@ -354,10 +258,7 @@ public class Encryption {
                 String cipherTextBinary = BinaryText.substring(start, end);
     
                 /* Perform an Initial Permutation on the binary cipher text ==> binaryKey */
-                String IPBinary = "";
-                for (int i : IP) {
-                    IPBinary += cipherTextBinary.charAt(i - 1);
-                }
+                String IPBinary = permute(cipherTextBinary, IP);
 
                 /* Divide the permuted block into two halves of 32 bits */
                 String LeftIPBinary = IPBinary.substring(0, 32);
@@ -377,81 +278,8 @@ public class Encryption {
                     String LeftBlock = RightIPBinary;
                     pw.println("LEFT BLOCK  = " + LeftBlock);
 
-                    //Right block is previous left block XOR F(previous left block, round key)
-                    String expand = "";
-                    for (int i : E) {
-                        expand += RightIPBinary.charAt(i - 1);
-                    }
-
-                    //XOR 'expand' and the key since they are now both 48 bits long
-                    StringBuilder sb = new StringBuilder();
-                    for (int i = 0; i < k.length(); i++) {
-                        sb.append((k.charAt(i) ^ expand.charAt(i)));
-                    }
-                    String result = sb.toString();         
-
-                    //"S boxes" 8 groups of six bits return as 4 bits this in  order to return to original 32 bits size
-                    String RB1 = result.substring(0, 6);
-                    String row1 = String.valueOf(RB1.substring(0, 1) + RB1.substring(5, 6));
-                    String col1 = String.valueOf(RB1.substring(1, 5));
-                    int target = S1[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    String binaryTarget = String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB2 = result.substring(6, 12);
-                    row1 = String.valueOf(RB2.substring(0, 1) + RB2.substring(5, 6));
-                    col1 = String.valueOf(RB2.substring(1, 5));
-                    target = S2[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB3 = result.substring(12, 18);
-                    row1 = String.valueOf(RB3.substring(0, 1) + RB3.substring(5, 6));
-                    col1 = String.valueOf(RB3.substring(1, 5));
-                    target = S3[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB4 = result.substring(18, 24);
-                    row1 = String.valueOf(RB4.substring(0, 1) + RB4.substring(5, 6));
-                    col1 = String.valueOf(RB4.substring(1, 5));
-                    target = S4[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB5 = result.substring(24, 30);
-                    row1 = String.valueOf(RB5.substring(0, 1) + RB5.substring(5, 6));
-                    col1 = String.valueOf(RB5.substring(1, 5));
-                    target = S5[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB6 = result.substring(30, 36);
-                    row1 = String.valueOf(RB6.substring(0, 1) + RB6.substring(5, 6));
-                    col1 = String.valueOf(RB6.substring(1, 5));
-                    target = S6[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB7 = result.substring(36, 42);
-                    row1 = String.valueOf(RB7.substring(0, 1) + RB7.substring(5, 6));
-                    col1 = String.valueOf(RB7.substring(1, 5));
-                    target = S7[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    String RB8 = result.substring(42, 48);
-                    row1 = String.valueOf(RB8.substring(0, 1) + RB8.substring(5, 6));
-                    col1 = String.valueOf(RB8.substring(1, 5));
-                    target = S8[Integer.parseInt(row1, 2)][Integer.parseInt(col1, 2)];
-                    binaryTarget += String.format("%4s", Integer.toBinaryString(target)).replace(' ', '0');
-
-                    //Lastly,to get f we permutate the output of the S-box using table P 
-                    String function = "";
-                    for (int d : P) {
-                        function += binaryTarget.charAt(d - 1);
-                    }
-
-                    //Finally, Previous Left block XOR function
-                    sb = new StringBuilder();
-                    for (int i = 0; i < LeftIPBinary.length(); i++) {
-                        sb.append((LeftIPBinary.charAt(i) ^ function.charAt(i)));
-                    }
-                    result = sb.toString();
-
+                    //Right block is previous left block XOR F(previous right block, round key)
+                    String result = xor(LeftIPBinary, f(RightIPBinary, k));
                     RightIPBinary = result;
                     pw.println("RIGHT BLOCK = " + RightIPBinary);
                     result = "";
@@ -462,12 +290,10 @@ public class Encryption {
                         result = RightIPBinary + LeftBlock;
 
                         //Final Permutation: The inverse of the initial permutation
-                        String finalResult = "";
-                        for (int x : FP) {
-                            finalResult += result.charAt(x - 1);
-                        }
+                        String finalResult = permute(result, FP);
                         
                         binaryDecipher += finalResult;
+                        DECRYPTED.record(8);
                         decipher += id == 1 && leftSpace != 0 ? intTostr(finalResult, 8).substring(leftSpace) : intTostr(finalResult, 8);   
                         pw.println("DECRYPTED CIPHER OF 64-bit " + wordCount +" = " + intTostr(finalResult, 8));                     
                     }
@@ -489,35 +315,134 @@ public class Encryption {
         }
     }
     
+    /* 16 48-bit round keys from a 64-bit binary key, served from the shared key-schedule cache */
+    public String[] generateRoundKeys(String binaryKey) {
+
+        long start = KEY_SETUP_LATENCY.start();
+        byte[][] schedule = KeyScheduleCache.shared().get("DES", binaryKey.getBytes(StandardCharsets.US_ASCII), key -> {
+            String[] derived = deriveRoundKeys(binaryKey);
+            byte[][] bits = new byte[16][];
+            for (int i = 0; i < 16; i++) {
+                bits[i] = derived[i].getBytes(StandardCharsets.US_ASCII);
+            }
+            return bits;
+        });
+        String[] roundKeys = new String[16];
+        for (int i = 0; i < 16; i++) {
+            roundKeys[i] = new String(schedule[i], StandardCharsets.US_ASCII);
+            Arrays.fill(schedule[i], (byte) 0);
+        }
+        KEY_SETUP_LATENCY.recordSince(start);
+        return roundKeys;
+    }
+
+    /* PC-1, circular left shifts of both halves, PC-2 */
+    private String[] deriveRoundKeys(String binaryKey) {
+
+        String key56 = permute(binaryKey, PC1);
+        String Lkey = key56.substring(0, 28);
+        String Rkey = key56.substring(28, 56);
+        String[] roundKeys = new String[16];
+        for (int i = 0; i < 16; i++) {
+            Lkey = CircularLeftShift(Lkey, NumLeftShifts[i]);
+            Rkey = CircularLeftShift(Rkey, NumLeftShifts[i]);
+            roundKeys[i] = permute(Lkey + Rkey, PC2);
+        }
+        return roundKeys;
+    }
+
+    /* Function f: expand the 32-bit right block with E, XOR the round key, S-boxes, then permutation P */
+    public String f(String right, String roundKey) {
+
+        String result = xor(roundKey, permute(right, E));
+        //"S boxes": 8 groups of six bits return as 4 bits, row from the outer bits and column from the inner four
+        StringBuilder binaryTarget = new StringBuilder(32);
+        for (int s = 0; s < 8; s++) {
+            String group = result.substring(6 * s, 6 * s + 6);
+            int row = Integer.parseInt(group.charAt(0) + group.substring(5, 6), 2);
+            int col = Integer.parseInt(group.substring(1, 5), 2);
+            int target = SBoxes[s][row][col];
+            for (int b = 3; b >= 0; b--) {
+                binaryTarget.append((target >> b) & 1);
+            }
+        }
+        return permute(binaryTarget.toString(), P);
+    }
+
+    /* Encrypt one 64-bit binary block with the given round keys, without printing the rounds */
+    public String encryptBlock(String block, String[] roundKeys) {
+
+        return crypt(block, roundKeys, false);
+    }
+
+    /* Decrypt one 64-bit binary block: the same rounds with the keys in reverse order */
+    public String decryptBlock(String block, String[] roundKeys) {
+
+        return crypt(block, roundKeys, true);
+    }
+
+    private String crypt(String block, String[] roundKeys, boolean reverse) {
+
+        long start = BLOCK_LATENCY.start();
+        String IPBinary = permute(block, IP);
+        String left = IPBinary.substring(0, 32);
+        String right = IPBinary.substring(32, 64);
+        for (int i = 0; i < 16; i++) {
+            String k = roundKeys[reverse ? 15 - i : i];
+            String next = xor(left, f(right, k));
+            left = right;
+            right = next;
+        }
+        String result = permute(right + left, FP);
+        (reverse ? DECRYPTED : ENCRYPTED).record(8);
+        BLOCK_LATENCY.recordSince(start);
+        return result;
+    }
+
+    /* Pick the bits of 'bits' named by a 1-based permutation table */
+    String permute(String bits, int[] table) {
+
+        StringBuilder sb = new StringBuilder(table.length);
+        for (int i : table) {
+            sb.append(bits.charAt(i - 1));
+        }
+        return sb.toString();
+    }
+
+    /* XOR of two binary strings of the same length */
+    String xor(String a, String b) {
+
+        StringBuilder sb = new StringBuilder(a.length());
+        for (int i = 0; i < a.length(); i++) {
+            sb.append(a.charAt(i) ^ b.charAt(i));
+        }
+        return sb.toString();
+    }
+
     /* Convert string to binary string */
     public String strTobin( String str ) {
         
         byte[] bytes = str.getBytes();
-        StringBuilder binary = new StringBuilder();
-        for (byte b : bytes) {
-            int val = b;
-            for (int i = 0; i < 8; i++) {
-                  binary.append((val & 128) == 0 ? 0 : 1);
-                  val <<= 1;
-            }
-            binary.append(' ');
-        }
-        return binary.toString();
+        return TextCodec.appendBinary(new StringBuilder(9 * bytes.length), bytes, 0, bytes.length, ' ').toString();
     }
     
     /* Convert integer to String */
     public String intTostr( String stream, int size ) { 
         
-        String result = "";
-        for (int i = 0; i < stream.length(); i += size) {
-            result += (stream.substring(i, Math.min(stream.length(), i + size)) + " ");
-        }  
-        String[] ss = result.split( " " );
-        StringBuilder sb = new StringBuilder();
-        for ( int i = 0; i < ss.length; i++ ) { 
-            sb.append( (char)Integer.parseInt( ss[i], 2 ) );                                                                                                                                                        
-        }   
-        return sb.toString();
+        if (size == 8) {
+            byte[] bytes = new byte[(stream.length() + 7) / 8];
+            TextCodec.decodeBinary(stream, 0, stream.length(), bytes, 0);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[(stream.length() + size - 1) / size];
+        for (int i = 0; i < chars.length; i++) {
+            int value = 0;
+            for (int j = i * size; j < Math.min(stream.length(), (i + 1) * size); j++) {
+                value = (value << 1) | (stream.charAt(j) - '0');
+            }
+            chars[i] = (char) value;
+        }
+        return new String(chars);
     }  
 
     /* Left shift function */
@@ -0,0 +1,71 @@
+import java.nio.ByteBuffer;
+
+//Wire format of EncryptionServer. Every integer is big-endian; frames may be pipelined and are answered in order.
+//
+//  request   int length | int id | byte op | byte algorithm | byte keyLength | key | data
+//  response  int length | int id | byte status | data
+//
+//length counts the bytes after the length field. AES, DES and DESede work in ECB without padding, so data must be
+//a whole number of blocks; LFSR data may have any length and every request starts from the key's register.
+//A response is never longer than its request, so a response buffer as large as the request buffer always fits
+//the answers to everything the request buffer held.
+final class EncryptionProtocol {
+    static final byte ENCRYPT = 1;
+    static final byte DECRYPT = 2;
+
+    static final byte AES = 1;
+    static final byte DES = 2;
+    static final byte DESEDE = 3;
+    static final byte LFSR = 4;
+
+    static final byte OK = 0;
+    static final byte UNSUPPORTED = 1;  // unknown op or algorithm
+    static final byte BAD_KEY = 2;
+    static final byte BAD_LENGTH = 3;   // data not a whole number of blocks
+
+    static final int REQUEST_HEADER = 4 + 4 + 3;
+    static final int RESPONSE_HEADER = 4 + 4 + 1;
+
+    private EncryptionProtocol() {
+    }
+
+    static void putRequest(ByteBuffer out, int id, byte op, byte algorithm, byte[] key, byte[] data, int off, int len) {
+        out.putInt(REQUEST_HEADER - 4 + key.length + len)
+                .putInt(id)
+                .put(op)
+                .put(algorithm)
+                .put((byte) key.length)
+                .put(key)
+                .put(data, off, len);
+    }
+
+    // Block size of the algorithm's ECB mode, 1 for the stream cipher, 0 if unknown
+    static int blockSize(byte algorithm) {
+        switch (algorithm) {
+            case AES:
+                return 16;
+            case DES:
+            case DESEDE:
+                return 8;
+            case LFSR:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    static byte algorithm(String name) {
+        switch (name.toUpperCase()) {
+            case "AES":
+                return AES;
+            case "DES":
+                return DES;
+            case "DESEDE":
+                return DESEDE;
+            case "LFSR":
+                return LFSR;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + name);
+        }
+    }
+}
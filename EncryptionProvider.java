@@ -0,0 +1,51 @@
+import java.security.Provider;
+import java.util.List;
+import java.util.Map;
+
+//java.security.Provider exposing the engines of this repository through JCA:
+//
+//  Cipher        AES (ECB, NoPadding / PKCS5Padding), AES/CTR/NoPadding, DES, DESede (ECB, NoPadding /
+//                PKCS5Padding), LFSR, RSA (ECB, OAEPWithSHA-256AndMGF1Padding)
+//  KeyGenerator  AES, DES, DESede, LFSR
+//  KeyPairGenerator RSA
+//
+//Use it without installing it, e.g. Cipher.getInstance("AES/CTR/NoPadding", new EncryptionProvider()), or add
+//it with Security.addProvider. Note that AES.java is not FIPS-197 compatible, so AES cipher texts differ from
+//other providers'; DES and DESede match SunJCE.
+public final class EncryptionProvider extends Provider {
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "EncryptionAlgorithms";
+
+    private static final Map<String, String> ECB_PADDED = Map.of(
+            "SupportedModes", "ECB",
+            "SupportedPaddings", "NOPADDING|PKCS5PADDING",
+            "SupportedKeyFormats", "RAW");
+
+    public EncryptionProvider() {
+        super(NAME, "1.0", "AES, AES-CTR, DES, DESede, LFSR and RSA engines of the Encryption-Algorithms repository");
+        service("Cipher", "AES", AESCipherSpi.class, List.of(), ECB_PADDED);
+        service("Cipher", "AES/CTR/NoPadding", AESCTRCipherSpi.class, List.of(),
+                Map.of("SupportedKeyFormats", "RAW"));
+        service("Cipher", "DES", DESCipherSpi.Single.class, List.of(), ECB_PADDED);
+        service("Cipher", "DESede", DESCipherSpi.TripleDES.class, List.of("TripleDES"), ECB_PADDED);
+        service("Cipher", "LFSR", LFSRCipherSpi.class, List.of(),
+                Map.of("SupportedModes", "NONE", "SupportedPaddings", "NOPADDING", "SupportedKeyFormats", "RAW"));
+        service("Cipher", "RSA", RSACipherSpi.class, List.of(), Map.of(
+                "SupportedModes", "ECB|NONE",
+                "SupportedPaddings", "OAEPWITHSHA-256ANDMGF1PADDING|OAEPPADDING",
+                "SupportedKeyClasses", "java.security.interfaces.RSAPublicKey|java.security.interfaces.RSAPrivateCrtKey"));
+
+        service("KeyGenerator", "AES", SecretKeyGeneratorSpi.AESKeyGenerator.class, List.of(), Map.of());
+        service("KeyGenerator", "DES", SecretKeyGeneratorSpi.DESKeyGenerator.class, List.of(), Map.of());
+        service("KeyGenerator", "DESede", SecretKeyGeneratorSpi.DESedeKeyGenerator.class, List.of("TripleDES"),
+                Map.of());
+        service("KeyGenerator", "LFSR", SecretKeyGeneratorSpi.LFSRKeyGenerator.class, List.of(), Map.of());
+        service("KeyPairGenerator", "RSA", RSAKeyPairGeneratorSpi.class, List.of(), Map.of());
+    }
+
+    private void service(String type, String algorithm, Class<?> implementation, List<String> aliases,
+                         Map<String, String> attributes) {
+        putService(new Service(this, type, algorithm, implementation.getName(), aliases, attributes));
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import memory.BufferArena;
+import metrics.CipherMetrics;
+
+//Encryption sidecar: serves AES, DES, DESede and LFSR over the length-prefixed protocol of EncryptionProtocol on a
+//TCP port or a Unix-domain socket, so several local processes can share one set of warmed-up engines.
+//
+//Two connection models:
+//  threads  one thread per connection doing blocking I/O; virtual threads when the runtime has them (JDK 21+),
+//           platform threads otherwise
+//  nio      a few selector threads multiplexing all connections with non-blocking I/O
+//
+//Both read into direct buffers from the shared BufferArena and hand every complete frame of a read to EncryptionSession, which batches
+//pipelined requests before the responses are written back with one write.
+//
+//  java EncryptionServer [--mode threads|nio] [--port 7070 | --unix /tmp/encryption.sock] [--selectors N]
+//                        [--buffer 65536]
+public final class EncryptionServer implements AutoCloseable {
+    private final ServerSocketChannel server;
+    private final Path unixPath;
+    private final BufferArena buffers = BufferArena.shared();
+    private final int bufferSize;
+
+    EncryptionServer(SocketAddress address, int bufferSize) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            unixPath = ((UnixDomainSocketAddress) address).getPath();
+            Files.deleteIfExists(unixPath); // left behind by a previous run
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            unixPath = null;
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        this.bufferSize = bufferSize;
+    }
+
+    // Thread (or virtual thread) per connection; returns when the server is closed
+    void serveBlocking() throws IOException {
+        ExecutorService executor = connectionExecutor();
+        try {
+            while (server.isOpen()) {
+                SocketChannel channel = accept();
+                if (channel == null) {
+                    break;
+                }
+                executor.execute(() -> serveBlocking(channel));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // The connection's thread ends with the connection, so its buffers bypass the arena's thread cache and go back
+    // to the global free list, where the next connection's thread finds them
+    private void serveBlocking(SocketChannel channel) {
+        ByteBuffer in = buffers.allocateShared(bufferSize);
+        ByteBuffer out = buffers.allocateShared(bufferSize);
+        EncryptionSession session = new EncryptionSession();
+        try (channel) {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                session.process(in, out);
+                in.compact();
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                out.clear();
+            }
+        } catch (IOException e) {
+            // connection reset or a malformed frame: drop the connection
+        } finally {
+            buffers.releaseShared(in);
+            buffers.releaseShared(out);
+        }
+    }
+
+    // Selector threads multiplexing the connections; returns when the server is closed
+    void serveNonBlocking(int selectors) throws IOException {
+        SelectorLoop[] loops = new SelectorLoop[selectors];
+        for (int i = 0; i < selectors; i++) {
+            loops[i] = new SelectorLoop();
+            Thread thread = new Thread(loops[i], "encryption-selector-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            for (int next = 0; server.isOpen(); next = (next + 1) % selectors) {
+                SocketChannel channel = accept();
+                if (channel == null) {
+                    break;
+                }
+                channel.configureBlocking(false);
+                loops[next].register(channel);
+            }
+        } finally {
+            for (SelectorLoop loop : loops) {
+                loop.selector.close();
+            }
+        }
+    }
+
+    private SocketChannel accept() throws IOException {
+        try {
+            return server.accept();
+        } catch (IOException e) {
+            if (server.isOpen()) {
+                throw e;
+            }
+            return null; // closed while waiting
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if (unixPath != null) {
+            Files.deleteIfExists(unixPath);
+        }
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor() where the runtime provides it (looked up reflectively so the code
+    //still compiles for Java 17), a cached pool of daemon platform threads otherwise
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "encryption-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        SelectorLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    for (SocketChannel channel = pending.poll(); channel != null; channel = pending.poll()) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                connection.flush(key);
+                            } else if (key.isReadable()) {
+                                connection.read(key);
+                            }
+                        } catch (IOException e) {
+                            connection.close(key);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // ClosedSelectorException on shutdown
+            }
+        }
+    }
+
+    //non-blocking connection state: in is always in fill mode; out is in drain mode while a write is pending
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = buffers.allocate(bufferSize);
+        private final ByteBuffer out = buffers.allocate(bufferSize);
+        private final EncryptionSession session = new EncryptionSession();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read(SelectionKey key) throws IOException {
+            if (channel.read(in) < 0) {
+                close(key);
+                return;
+            }
+            in.flip();
+            session.process(in, out);
+            in.compact();
+            out.flip();
+            flush(key);
+        }
+
+        // stops reading until the responses are written, so a slow reader cannot make the server buffer without bound
+        void flush(SelectionKey key) throws IOException {
+            channel.write(out);
+            if (out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                out.clear();
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+            buffers.release(in);
+            buffers.release(out);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mode = "threads";
+        SocketAddress address = new InetSocketAddress("127.0.0.1", 7070);
+        int selectors = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int bufferSize = 64 * 1024;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mode":
+                    mode = args[i + 1];
+                    break;
+                case "--port":
+                    address = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[i + 1]));
+                    break;
+                case "--unix":
+                    address = UnixDomainSocketAddress.of(args[i + 1]);
+                    break;
+                case "--selectors":
+                    selectors = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--buffer":
+                    bufferSize = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        EncryptionServer server = new EncryptionServer(address, bufferSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // exiting anyway
+            }
+            System.out.print(CipherMetrics.snapshot().toText());
+        }));
+        System.out.println("Listening on " + address + " (" + mode + ")");
+        if (mode.equals("nio")) {
+            server.serveNonBlocking(selectors);
+        } else {
+            server.serveBlocking();
+        }
+    }
+}
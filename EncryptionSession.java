@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import metrics.CipherMetrics;
+import metrics.LatencyHistogram;
+
+//Per-connection request processing of EncryptionServer: decodes every complete frame in the input buffer and
+//appends the responses to the output buffer.
+//Pipelined requests are batched: consecutive requests with the same op, algorithm and key share one key setup and
+//one engine call. For the block ciphers their data is gathered into one array and run through a single doFinal;
+//for LFSR, whose requests each start from the register, one keystream as long as the longest request is generated
+//and XORed into each.
+//Not thread-safe; each connection owns one session.
+final class EncryptionSession {
+    private static final Provider PROVIDER = new EncryptionProvider();
+    private static final CipherMetrics.Counter REQUESTS = CipherMetrics.counter("server", "requests");
+    private static final CipherMetrics.Counter BATCHES = CipherMetrics.counter("server", "batches");
+    private static final LatencyHistogram BATCH_LATENCY = CipherMetrics.histogram("server", "batch");
+
+    private final Cipher[] ciphers = new Cipher[EncryptionProtocol.LFSR + 1];
+    private byte[] scratch = new byte[4096];
+    private int keystreamLength; // LFSR batches: scratch holds the keystream, followed by room for one request
+
+    // decoded frames of the current buffer, parallel arrays indexed by frame
+    private int frames;
+    private int[] ids = new int[64];
+    private byte[] ops = new byte[64];
+    private byte[] algorithms = new byte[64];
+    private int[] keyOffsets = new int[64];
+    private int[] keyLengths = new int[64];
+    private int[] dataOffsets = new int[64];
+    private int[] dataLengths = new int[64];
+    private byte[] statuses = new byte[64];
+
+    // Consumes every complete frame of in (read mode) and puts the responses into out (write mode, at least
+    // in.capacity() bytes free). A partial frame is left in place. Throws IOException for a frame that can never fit.
+    void process(ByteBuffer in, ByteBuffer out) throws IOException {
+        frames = 0;
+        int position = in.position();
+        while (in.limit() - position >= 4) {
+            int length = in.getInt(position);
+            if (length < EncryptionProtocol.REQUEST_HEADER - 4 || length > in.capacity() - 4) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.limit() - position - 4 < length) {
+                break;
+            }
+            int keyLength = in.get(position + 10) & 0xFF;
+            if (keyLength > length - (EncryptionProtocol.REQUEST_HEADER - 4)) {
+                throw new IOException("Key longer than its frame");
+            }
+            add(in, position, length, keyLength);
+            position += 4 + length;
+        }
+        int end = position;
+        for (int first = 0; first < frames; ) {
+            int last = first + 1;
+            while (last < frames && sameBatch(in, first, last)) {
+                last++;
+            }
+            long start = BATCH_LATENCY.start();
+            runBatch(in, first, last);
+            BATCH_LATENCY.recordSince(start);
+            writeResponses(in, out, first, last);
+            first = last;
+        }
+        in.position(end);
+    }
+
+    private void add(ByteBuffer in, int position, int length, int keyLength) {
+        if (frames == ids.length) {
+            int size = 2 * frames;
+            ids = Arrays.copyOf(ids, size);
+            ops = Arrays.copyOf(ops, size);
+            algorithms = Arrays.copyOf(algorithms, size);
+            keyOffsets = Arrays.copyOf(keyOffsets, size);
+            keyLengths = Arrays.copyOf(keyLengths, size);
+            dataOffsets = Arrays.copyOf(dataOffsets, size);
+            dataLengths = Arrays.copyOf(dataLengths, size);
+            statuses = Arrays.copyOf(statuses, size);
+        }
+        int i = frames++;
+        ids[i] = in.getInt(position + 4);
+        ops[i] = in.get(position + 8);
+        algorithms[i] = in.get(position + 9);
+        keyOffsets[i] = position + EncryptionProtocol.REQUEST_HEADER;
+        keyLengths[i] = keyLength;
+        dataOffsets[i] = keyOffsets[i] + keyLength;
+        dataLengths[i] = length - (EncryptionProtocol.REQUEST_HEADER - 4) - keyLength;
+        int blockSize = EncryptionProtocol.blockSize(algorithms[i]);
+        if (blockSize == 0 || (ops[i] != EncryptionProtocol.ENCRYPT && ops[i] != EncryptionProtocol.DECRYPT)) {
+            statuses[i] = EncryptionProtocol.UNSUPPORTED;
+        } else if (dataLengths[i] % blockSize != 0) {
+            statuses[i] = EncryptionProtocol.BAD_LENGTH;
+        } else {
+            statuses[i] = EncryptionProtocol.OK;
+        }
+    }
+
+    private boolean sameBatch(ByteBuffer in, int a, int b) {
+        return ops[a] == ops[b] && algorithms[a] == algorithms[b] && keyLengths[a] == keyLengths[b]
+                && in.slice(keyOffsets[a], keyLengths[a]).equals(in.slice(keyOffsets[b], keyLengths[b]));
+    }
+
+    //sets up the key once and runs the data of frames [first, last) through the cipher; results go to scratch
+    private void runBatch(ByteBuffer in, int first, int last) {
+        byte algorithm = algorithms[first];
+        int total = 0;
+        int longest = 0;
+        int requests = 0;
+        for (int i = first; i < last; i++) {
+            if (statuses[i] == EncryptionProtocol.OK) {
+                total += dataLengths[i];
+                longest = Math.max(longest, dataLengths[i]);
+                requests++;
+            }
+        }
+        if (requests == 0) {
+            return;
+        }
+        boolean stream = algorithm == EncryptionProtocol.LFSR;
+        int needed = stream ? 2 * longest : total;
+        if (scratch.length < needed) {
+            scratch = new byte[Math.max(needed, 2 * scratch.length)];
+        }
+        byte[] key = new byte[keyLengths[first]];
+        in.get(keyOffsets[first], key);
+        try {
+            Cipher cipher = cipher(algorithm);
+            cipher.init(stream || ops[first] == EncryptionProtocol.ENCRYPT ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                    new SecretKeySpec(key, 0, key.length, "RAW"));
+            if (stream) {
+                Arrays.fill(scratch, 0, longest, (byte) 0);
+                cipher.doFinal(scratch, 0, longest, scratch, 0); // the keystream
+                keystreamLength = longest;
+            } else {
+                int offset = 0;
+                for (int i = first; i < last; i++) {
+                    if (statuses[i] == EncryptionProtocol.OK) {
+                        in.get(dataOffsets[i], scratch, offset, dataLengths[i]);
+                        offset += dataLengths[i];
+                    }
+                }
+                cipher.doFinal(scratch, 0, total, scratch, 0);
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            for (int i = first; i < last; i++) {
+                if (statuses[i] == EncryptionProtocol.OK) {
+                    statuses[i] = EncryptionProtocol.BAD_KEY;
+                }
+            }
+            return;
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+        REQUESTS.record(requests, total);
+        BATCHES.record(1, total);
+    }
+
+    private void writeResponses(ByteBuffer in, ByteBuffer out, int first, int last) {
+        boolean stream = algorithms[first] == EncryptionProtocol.LFSR;
+        int offset = 0;
+        for (int i = first; i < last; i++) {
+            boolean ok = statuses[i] == EncryptionProtocol.OK;
+            int length = ok ? dataLengths[i] : 0;
+            out.putInt(EncryptionProtocol.RESPONSE_HEADER - 4 + length).putInt(ids[i]).put(statuses[i]);
+            if (!ok) {
+                continue;
+            }
+            if (stream) {
+                in.get(dataOffsets[i], scratch, keystreamLength, length);
+                for (int j = 0; j < length; j++) {
+                    scratch[keystreamLength + j] ^= scratch[j];
+                }
+                out.put(scratch, keystreamLength, length);
+            } else {
+                out.put(scratch, offset, length);
+                offset += length;
+            }
+        }
+    }
+
+    private Cipher cipher(byte algorithm) throws GeneralSecurityException {
+        Cipher cipher = ciphers[algorithm];
+        if (cipher == null) {
+            String transformation;
+            switch (algorithm) {
+                case EncryptionProtocol.AES:
+                    transformation = "AES/ECB/NoPadding";
+                    break;
+                case EncryptionProtocol.DES:
+                    transformation = "DES/ECB/NoPadding";
+                    break;
+                case EncryptionProtocol.DESEDE:
+                    transformation = "DESede/ECB/NoPadding";
+                    break;
+                default:
+                    transformation = "LFSR";
+            }
+            cipher = Cipher.getInstance(transformation, PROVIDER);
+            ciphers[algorithm] = cipher;
+        }
+        return cipher;
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+//Hybrid envelope encryption: a random AES session key is wrapped once per recipient with RSA (OAEP blocks from
+//RSA.encrypt) and the payload is streamed through AES-CTR, so the public-key cost is one operation per recipient
+//and the body is encrypted in a single pass at AES speed.
+//
+//Layout:
+//  "ENV1" | recipient count (u16) | per recipient: key id (32) | wrapped length (u16) | wrapped key
+//  | IV (16) | chunks: length (s32) | cipher text ... | 0 | HMAC-SHA256 tag (32)
+//The tag covers everything before it. The wrapped key is the AES key followed by the HMAC key.
+class Envelope {
+    private static final byte[] MAGIC = {'E', 'N', 'V', '1'};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int KEY_ID_SIZE = 32;
+    private static final int MAC_KEY_SIZE = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private Envelope() {
+    }
+
+    // Encrypts everything read from in for all recipients and writes the envelope to out
+    static void seal(List<RSAKeyPair> recipients, InputStream in, OutputStream out) throws IOException {
+        if (recipients.isEmpty() || recipients.size() > 0xFFFF) {
+            throw new IllegalArgumentException("An envelope needs between 1 and 65535 recipients");
+        }
+        byte[] sessionKey = new byte[AES.KEY_SIZE + MAC_KEY_SIZE];
+        byte[] iv = new byte[AES.BLOCK_SIZE];
+        RANDOM.nextBytes(sessionKey);
+        RANDOM.nextBytes(iv);
+        try {
+            Mac mac = hmac(sessionKey);
+            AESCTR ctr = AESCTR.singleUse(Arrays.copyOf(sessionKey, AES.KEY_SIZE), iv);
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.write(MAGIC);
+            header.writeShort(recipients.size());
+            for (RSAKeyPair recipient : recipients) {
+                byte[] wrapped = RSA.encrypt(recipient, sessionKey);
+                header.write(keyId(recipient));
+                header.writeShort(wrapped.length);
+                header.write(wrapped);
+            }
+            header.write(iv);
+            byte[] headerData = headerBytes.toByteArray();
+            mac.update(headerData);
+            out.write(headerData);
+
+            // body: one pass, chunk by chunk
+            byte[] plain = new byte[CHUNK_SIZE];
+            byte[] chunk = new byte[4 + CHUNK_SIZE];
+            int len;
+            while ((len = in.readNBytes(plain, 0, CHUNK_SIZE)) > 0) {
+                writeInt(chunk, len);
+                ctr.update(plain, 0, len, chunk, 4);
+                mac.update(chunk, 0, 4 + len);
+                out.write(chunk, 0, 4 + len);
+            }
+            writeInt(chunk, 0);
+            mac.update(chunk, 0, 4);
+            out.write(chunk, 0, 4);
+            out.write(mac.doFinal());
+            out.flush();
+            Arrays.fill(plain, (byte) 0);
+        } finally {
+            Arrays.fill(sessionKey, (byte) 0);
+        }
+    }
+
+    // Decrypts an envelope for one recipient. Plain text is streamed to out as it is decrypted, so callers must
+    // discard it if this throws: the tag can only be checked after the last chunk.
+    static void open(RSAKeyPair recipient, InputStream in, OutputStream out) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+
+        byte[] magic = new byte[MAGIC.length];
+        din.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an envelope");
+        }
+        header.write(magic);
+        int count = din.readUnsignedShort();
+        header.writeShort(count);
+
+        byte[] id = keyId(recipient);
+        byte[] sessionKey = null;
+        for (int i = 0; i < count; i++) {
+            byte[] entryId = new byte[KEY_ID_SIZE];
+            din.readFully(entryId);
+            byte[] wrapped = new byte[din.readUnsignedShort()];
+            din.readFully(wrapped);
+            header.write(entryId);
+            header.writeShort(wrapped.length);
+            header.write(wrapped);
+            if (sessionKey == null && Arrays.equals(entryId, id)) {
+                try {
+                    sessionKey = RSA.decrypt(recipient, wrapped);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Corrupt wrapped key");
+                }
+            }
+        }
+        if (sessionKey == null) {
+            throw new IOException("Envelope has no entry for this key");
+        }
+        if (sessionKey.length != AES.KEY_SIZE + MAC_KEY_SIZE) {
+            throw new IOException("Corrupt session key");
+        }
+        byte[] iv = new byte[AES.BLOCK_SIZE];
+        din.readFully(iv);
+        header.write(iv);
+
+        try {
+            Mac mac = hmac(sessionKey);
+            mac.update(headerBytes.toByteArray());
+            AESCTR ctr = AESCTR.singleUse(Arrays.copyOf(sessionKey, AES.KEY_SIZE), iv);
+
+            byte[] chunk = new byte[4 + CHUNK_SIZE];
+            byte[] plain = new byte[CHUNK_SIZE];
+            while (true) {
+                din.readFully(chunk, 0, 4);
+                int len = readInt(chunk);
+                if (len < 0 || len > CHUNK_SIZE) {
+                    throw new IOException("Corrupt envelope chunk");
+                }
+                din.readFully(chunk, 4, len);
+                mac.update(chunk, 0, 4 + len);
+                if (len == 0) {
+                    break;
+                }
+                ctr.update(chunk, 4, len, plain, 0);
+                out.write(plain, 0, len);
+            }
+            byte[] tag = new byte[mac.getMacLength()];
+            din.readFully(tag);
+            if (!MessageDigest.isEqual(tag, mac.doFinal())) {
+                throw new IOException("Envelope authentication failed");
+            }
+            out.flush();
+            Arrays.fill(plain, (byte) 0);
+        } finally {
+            Arrays.fill(sessionKey, (byte) 0);
+        }
+    }
+
+    // Recipient id: SHA-256 of the modulus
+    static byte[] keyId(RSAKeyPair key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getN().toByteArray());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Mac hmac(byte[] sessionKey) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(sessionKey, AES.KEY_SIZE, MAC_KEY_SIZE, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static void writeInt(byte[] b, int v) {
+        b[0] = (byte) (v >>> 24);
+        b[1] = (byte) (v >>> 16);
+        b[2] = (byte) (v >>> 8);
+        b[3] = (byte) v;
+    }
+
+    private static int readInt(byte[] b) {
+        return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
+    }
+
+    public static void main(String[] args) throws IOException {
+        RSAKeyPair alice = RSA.generateRSAKeys(2048);
+        RSAKeyPair bob = RSA.generateRSAKeys(2048);
+        String message = "Envelope for Alice and Bob: one RSA operation per recipient, AES-CTR for the body.";
+
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        seal(List.of(alice, bob), new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)), sealed);
+        System.out.println("Envelope size: " + sealed.size() + " bytes");
+
+        for (RSAKeyPair recipient : List.of(alice, bob)) {
+            ByteArrayOutputStream opened = new ByteArrayOutputStream();
+            open(recipient, new ByteArrayInputStream(sealed.toByteArray()), opened);
+            System.out.println("Opened: " + opened.toString(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Fixed-base exponentiation for workloads that raise the same base under the same modulus many times
+//(blinding factors, Diffie-Hellman style generators).
+//For each (base, modulus) a table of g^(2^(w*i)) is precomputed once in Montgomery form; an exponentiation then
+//needs about bits / w + 2^w multiplications and no squarings (Brickell-Gordon-McCurley-Wilson).
+//Tables are kept in a size-bounded LRU cache.
+class FixedBaseExponentiation {
+    private static final int DEFAULT_CACHE_SIZE = 32;
+
+    private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
+    private static final Map<Key, Table> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Table> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private FixedBaseExponentiation() {
+    }
+
+    // base^exponent mod modulus; odd moduli are served from the cached table
+    static BigInteger squareAndMultiply(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (exponent.signum() < 0) {
+            throw new ArithmeticException("Negative exponent");
+        }
+        if (!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            return base.modPow(exponent, modulus);
+        }
+        return table(base, modulus).pow(exponent);
+    }
+
+    // Maximum number of cached tables (each holds about modulus bits / w values of the modulus size)
+    static void setCacheSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        synchronized (CACHE) {
+            cacheSize = size;
+            while (CACHE.size() > size) {
+                Key eldest = CACHE.keySet().iterator().next();
+                CACHE.remove(eldest);
+            }
+        }
+    }
+
+    static int cachedTables() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static Table table(BigInteger base, BigInteger modulus) {
+        BigInteger reduced = base.signum() < 0 || base.compareTo(modulus) >= 0 ? base.mod(modulus) : base;
+        Key key = new Key(reduced, modulus);
+        Table table;
+        synchronized (CACHE) {
+            table = CACHE.get(key);
+        }
+        if (table == null) {
+            // built outside the lock; a concurrent build of the same table only costs duplicate work
+            table = new Table(reduced, new MontgomeryContext(modulus));
+            synchronized (CACHE) {
+                Table existing = CACHE.putIfAbsent(key, table);
+                if (existing != null) {
+                    table = existing;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static final class Key {
+        private final BigInteger base;
+        private final BigInteger modulus;
+
+        Key(BigInteger base, BigInteger modulus) {
+            this.base = base;
+            this.modulus = modulus;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return base.equals(other.base) && modulus.equals(other.modulus);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * base.hashCode() + modulus.hashCode();
+        }
+    }
+
+    private static final class Table {
+        private final MontgomeryContext context;
+        private final BigInteger base;
+        private final int w;          // bits per digit
+        private final int[][] powers; // powers[i] = g^(2^(w * i)), Montgomery form
+
+        Table(BigInteger base, MontgomeryContext context) {
+            this.context = context;
+            this.base = base;
+            int maxBits = context.getModulus().bitLength();
+            this.w = digitSize(maxBits);
+            int digits = (maxBits + w - 1) / w;
+
+            int[] t = context.newScratch();
+            powers = new int[digits][];
+            powers[0] = context.toMontgomery(base, t);
+            int[] tmp = new int[context.limbCount()];
+            for (int i = 1; i < digits; i++) {
+                int[] acc = powers[i - 1].clone();
+                for (int s = 0; s < w; s++) {
+                    context.square(acc, tmp, t);
+                    int[] swap = acc; acc = tmp; tmp = swap;
+                }
+                powers[i] = acc;
+                tmp = new int[context.limbCount()];
+            }
+        }
+
+        // digit size minimising digits + 2^w multiplications
+        private static int digitSize(int bits) {
+            int best = 1;
+            long bestCost = Long.MAX_VALUE;
+            for (int w = 1; w <= 8; w++) {
+                long cost = (bits + w - 1) / w + (1L << w);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = w;
+                }
+            }
+            return best;
+        }
+
+        BigInteger pow(BigInteger exponent) {
+            if (exponent.signum() == 0) {
+                return BigInteger.ONE;
+            }
+            int digits = (exponent.bitLength() + w - 1) / w;
+            if (digits > powers.length) {
+                // larger than the table covers (exponents are normally below the modulus)
+                return base.modPow(exponent, context.getModulus());
+            }
+            int[] digit = new int[digits];
+            for (int i = 0; i < digits; i++) {
+                int d = 0;
+                for (int b = w - 1; b >= 0; b--) {
+                    d = (d << 1) | (exponent.testBit(w * i + b) ? 1 : 0);
+                }
+                digit[i] = d;
+            }
+
+            // result = prod over d of (prod of powers[i] with digit[i] = d)^d, accumulated from the top digit value down
+            int[] t = context.newScratch();
+            int[] a = context.montgomeryOne();
+            int[] b = context.montgomeryOne();
+            int[] tmp = new int[context.limbCount()];
+            boolean bIsOne = true;
+            for (int d = (1 << w) - 1; d >= 1; d--) {
+                for (int i = 0; i < digits; i++) {
+                    if (digit[i] == d) {
+                        context.multiply(b, powers[i], tmp, t);
+                        int[] swap = b; b = tmp; tmp = swap;
+                        bIsOne = false;
+                    }
+                }
+                if (!bIsOne) {
+                    context.multiply(a, b, tmp, t);
+                    int[] swap = a; a = tmp; tmp = swap;
+                }
+            }
+            return context.fromMontgomery(a, t);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+//Key encoding for Cipher.wrap / Cipher.unwrap in the cipher SPIs of EncryptionProvider. A key is wrapped as the
+//bytes of getEncoded(): RAW for secret keys, X.509 for public and PKCS#8 for private keys. Unwrapping rebuilds a
+//SecretKeySpec, or goes through the KeyFactory of the wrapped key's algorithm.
+final class KeyWrapping {
+    private KeyWrapping() {
+    }
+
+    // The bytes to encrypt; the caller zeroes them when done
+    static byte[] encode(Key key) throws InvalidKeyException {
+        byte[] encoded = key == null ? null : key.getEncoded();
+        if (encoded == null || encoded.length == 0) {
+            throw new InvalidKeyException("Key has no encoding to wrap");
+        }
+        return encoded;
+    }
+
+    // The key of the given Cipher.SECRET_KEY / PUBLIC_KEY / PRIVATE_KEY type for the decrypted encoding
+    static Key decode(byte[] encoded, String algorithm, int type) throws InvalidKeyException, NoSuchAlgorithmException {
+        try {
+            switch (type) {
+                case Cipher.SECRET_KEY:
+                    return new SecretKeySpec(encoded, algorithm);
+                case Cipher.PUBLIC_KEY:
+                    return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+                case Cipher.PRIVATE_KEY:
+                    return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+                default:
+                    throw new InvalidKeyException("Unknown key type " + type);
+            }
+        } catch (InvalidKeySpecException e) {
+            throw new InvalidKeyException("Unwrapped bytes are not a " + algorithm + " key", e);
+        }
+    }
+}
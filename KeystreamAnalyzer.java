@@ -0,0 +1,451 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+//Statistical tests for keystream quality, following NIST SP 800-22 (monobit, block frequency, runs, serial, linear complexity).
+//The keystream is bit-packed into long[] words (most significant bit first, same bit order as generateKey)
+//so the tests work with Long.bitCount on whole words, and the work is split across cores.
+//The whole keystream is held in memory, one bit per bit: at most MAX_BITS (about 137 Gbit, 16 GiB of words).
+public class KeystreamAnalyzer {
+
+    public static final double ALPHA = 0.01; // significance level used by printReport / allPass
+
+    public static final long MAX_BITS = (long) (Integer.MAX_VALUE - 8) * 64; // largest long[] the VM allocates
+
+    private static final int CHUNK_WORDS = 1 << 14; // words per parallel task
+    private static final int DRAW_BYTES = 1 << 16;  // keystream drawn per step by ofBits
+
+    private final long[] words;
+    private final long bitCount;
+    private final int lastIndex;
+    private final long lastWord; // words[lastIndex] with the bits past bitCount cleared
+
+    // The analyzer reads words in place (the array is neither copied nor modified), so it must not change
+    // while the analyzer is in use
+    public KeystreamAnalyzer(long[] words, long bitCount) {
+        if (bitCount <= 0 || bitCount > (long) words.length * 64) {
+            throw new IllegalArgumentException("Bit count does not match the packed keystream");
+        }
+        this.words = words;
+        this.bitCount = bitCount;
+        this.lastIndex = (int) ((bitCount - 1) >>> 6);
+        int rem = (int) (bitCount & 63);
+        // padding bits read as zero so whole-word popcounts stay exact
+        this.lastWord = rem == 0 ? words[lastIndex] : words[lastIndex] & (-1L << (64 - rem));
+    }
+
+    //wraps the output of StreamCipher.generateKey (or any keystream bytes)
+    public static KeystreamAnalyzer of(byte[] keystream) {
+        long[] packed = new long[(keystream.length + 7) / 8];
+        pack(keystream, keystream.length, packed, 0);
+        return new KeystreamAnalyzer(packed, (long) keystream.length * 8);
+    }
+
+    //draws len bytes (8 * len bits) of keystream by encrypting zeros through the allocation-free StreamCipher path
+    public static KeystreamAnalyzer ofBytes(StreamCipher cipher, int len) {
+        byte[] keystream = new byte[len];
+        cipher.encryptInPlace(keystream, 0, len);
+        return of(keystream);
+    }
+
+    //draws bits of keystream (a multiple of 8, up to MAX_BITS) from the start of cipher's keystream, DRAW_BYTES at a
+    //time straight into the packed words, so no byte copy of the whole stream is made
+    public static KeystreamAnalyzer ofBits(ContinuousStreamCipher cipher, long bits) {
+        if (bits <= 0 || bits % 8 != 0 || bits > MAX_BITS) {
+            throw new IllegalArgumentException("Bit count must be a positive multiple of 8 up to " + MAX_BITS);
+        }
+        long bytes = bits / 8;
+        long[] packed = new long[(int) ((bytes + 7) / 8)];
+        byte[] chunk = new byte[DRAW_BYTES];
+        cipher.reset();
+        for (long done = 0; done < bytes; done += DRAW_BYTES) {
+            int n = (int) Math.min(DRAW_BYTES, bytes - done);
+            Arrays.fill(chunk, 0, n, (byte) 0);
+            cipher.update(chunk, 0, n, chunk, 0);
+            pack(chunk, n, packed, done);
+        }
+        return new KeystreamAnalyzer(packed, bits);
+    }
+
+    //packs len bytes into packed, starting at byte index offset of the packed stream
+    private static void pack(byte[] bytes, int len, long[] packed, long offset) {
+        for (int i = 0; i < len; i++) {
+            long at = offset + i;
+            packed[(int) (at >>> 3)] |= (bytes[i] & 0xFFL) << (56 - 8 * (at & 7));
+        }
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    // Frequency (monobit) test
+    public double monobit() {
+        long ones = countOnes(0, bitCount);
+        double s = Math.abs(2.0 * ones - bitCount);
+        return erfc(s / Math.sqrt(2.0 * bitCount));
+    }
+
+    // Frequency test within blocks of blockSize bits
+    public double blockFrequency(int blockSize) {
+        if (blockSize < 20 || bitCount / blockSize < 1 || bitCount / blockSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Block size must be at least 20 bits and split the keystream into "
+                    + "1 to " + Integer.MAX_VALUE + " blocks");
+        }
+        int blocks = (int) (bitCount / blockSize);
+        double chi = IntStream.range(0, blocks).parallel().mapToDouble(b -> {
+            long start = (long) b * blockSize;
+            double pi = (double) countOnes(start, start + blockSize) / blockSize - 0.5;
+            return pi * pi;
+        }).sum();
+        return igamc(blocks / 2.0, 2.0 * blockSize * chi);
+    }
+
+    // Runs test: number of uninterrupted runs of identical bits
+    public double runs() {
+        double pi = (double) countOnes(0, bitCount) / bitCount;
+        if (Math.abs(pi - 0.5) >= 2.0 / Math.sqrt(bitCount)) {
+            return 0.0; // frequency prerequisite fails
+        }
+        long runs = 1 + countTransitions();
+        double expected = 2.0 * bitCount * pi * (1 - pi);
+        return erfc(Math.abs(runs - expected) / (2.0 * Math.sqrt(2.0 * bitCount) * pi * (1 - pi)));
+    }
+
+    // Serial test over overlapping m-bit patterns, returns both p-values
+    public double[] serial(int m) {
+        if (m < 3 || m > 20) {
+            throw new IllegalArgumentException("Pattern length must be between 3 and 20 bits");
+        }
+        long[] counts = countPatterns(m);
+        double psiM = psiSquared(counts, m);
+        counts = foldPatterns(counts);
+        double psiM1 = psiSquared(counts, m - 1);
+        counts = foldPatterns(counts);
+        double psiM2 = psiSquared(counts, m - 2);
+
+        double del1 = psiM - psiM1;
+        double del2 = psiM - 2 * psiM1 + psiM2;
+        return new double[]{igamc(Math.pow(2, m - 2), del1 / 2), igamc(Math.pow(2, m - 3), del2 / 2)};
+    }
+
+    // Linear complexity test: Berlekamp-Massey on each blockSize-bit block
+    public double linearComplexity(int blockSize) {
+        if (blockSize < 500 || blockSize > 5000 || bitCount / blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be between 500 and 5000 bits and fit in the keystream");
+        }
+        int blocks = (int) (bitCount / blockSize); // MAX_BITS / 500 fits
+        double[] pi = {0.010417, 0.03125, 0.125, 0.5, 0.25, 0.0625, 0.020833};
+        double sign = (blockSize % 2 == 0) ? 1 : -1;
+        double mean = blockSize / 2.0 + (9 + -sign) / 36.0 - (blockSize / 3.0 + 2.0 / 9) / Math.pow(2, blockSize);
+
+        int[] category = IntStream.range(0, blocks).parallel().map(b -> {
+            double t = sign * (linearComplexityOfBlock((long) b * blockSize, blockSize) - mean) + 2.0 / 9;
+            if (t <= -2.5) return 0;
+            if (t <= -1.5) return 1;
+            if (t <= -0.5) return 2;
+            if (t <= 0.5) return 3;
+            if (t <= 1.5) return 4;
+            if (t <= 2.5) return 5;
+            return 6;
+        }).toArray();
+        long[] nu = new long[7];
+        for (int i : category) {
+            nu[i]++;
+        }
+
+        double chi = 0;
+        for (int i = 0; i < 7; i++) {
+            double expected = blocks * pi[i];
+            chi += (nu[i] - expected) * (nu[i] - expected) / expected;
+        }
+        return igamc(3, chi / 2);
+    }
+
+    public boolean allPass() {
+        double[] serial = serial(defaultSerialLength());
+        return monobit() >= ALPHA
+                && blockFrequency(defaultBlockSize()) >= ALPHA
+                && runs() >= ALPHA
+                && serial[0] >= ALPHA && serial[1] >= ALPHA
+                && (bitCount < 500 || linearComplexity(500) >= ALPHA);
+    }
+
+    public void printReport() {
+        System.out.println("Keystream bits: " + bitCount);
+        printResult("Monobit", monobit());
+        printResult("Block Frequency (M=" + defaultBlockSize() + ")", blockFrequency(defaultBlockSize()));
+        printResult("Runs", runs());
+        double[] serial = serial(defaultSerialLength());
+        printResult("Serial (m=" + defaultSerialLength() + ") #1", serial[0]);
+        printResult("Serial (m=" + defaultSerialLength() + ") #2", serial[1]);
+        if (bitCount >= 500) {
+            printResult("Linear Complexity (M=500)", linearComplexity(500));
+        }
+    }
+
+    private void printResult(String name, double pValue) {
+        System.out.printf("%-30s p = %.6f  %s\n", name, pValue, pValue >= ALPHA ? "PASS" : "FAIL");
+    }
+
+    private int defaultBlockSize() {
+        return (int) Math.max(20, Math.min(bitCount / 100, 1 << 20));
+    }
+
+    // largest m with m < floor(log2 n) - 2, as recommended
+    private int defaultSerialLength() {
+        int log2 = 63 - Long.numberOfLeadingZeros(bitCount);
+        return Math.max(3, Math.min(16, log2 - 3));
+    }
+
+    //reads 64 bits starting at bit index pos (most significant first), bits outside the keystream read as zero
+    private long bitsAt(long pos) {
+        int w = (int) (pos >> 6);
+        int shift = (int) (pos & 63);
+        long hi = word(w) << shift;
+        return shift == 0 ? hi : hi | (word(w + 1) >>> (64 - shift));
+    }
+
+    private long word(int index) {
+        if (index < 0 || index > lastIndex) {
+            return 0;
+        }
+        return index == lastIndex ? lastWord : words[index];
+    }
+
+    //ones in bit range [from, to), whole words go through Long.bitCount, split across cores
+    private long countOnes(long from, long to) {
+        if (to - from <= (long) CHUNK_WORDS * 64) {
+            return countOnesSequential(from, to);
+        }
+        int chunks = (int) ((to - from + CHUNK_WORDS * 64L - 1) / (CHUNK_WORDS * 64L));
+        return IntStream.range(0, chunks).parallel().mapToLong(c -> {
+            long start = from + (long) c * CHUNK_WORDS * 64;
+            return countOnesSequential(start, Math.min(to, start + CHUNK_WORDS * 64L));
+        }).sum();
+    }
+
+    private long countOnesSequential(long from, long to) {
+        long ones = 0;
+        long pos = from;
+        for (; pos + 64 <= to; pos += 64) {
+            ones += Long.bitCount(bitsAt(pos));
+        }
+        int rest = (int) (to - pos);
+        if (rest > 0) {
+            ones += Long.bitCount(bitsAt(pos) & (-1L << (64 - rest)));
+        }
+        return ones;
+    }
+
+    //number of positions i where bit i differs from bit i+1: popcount of x XOR (x shifted by one bit)
+    private long countTransitions() {
+        int lastWord = (int) ((bitCount - 1) >>> 6);
+        int chunks = lastWord / CHUNK_WORDS + 1;
+        return IntStream.range(0, chunks).parallel().mapToLong(c -> {
+            int from = c * CHUNK_WORDS;
+            int to = Math.min(lastWord + 1, from + CHUNK_WORDS);
+            long transitions = 0;
+            for (int w = from; w < to; w++) {
+                long current = word(w);
+                long shifted = (current << 1) | (word(w + 1) >>> 63);
+                long diff = current ^ shifted;
+                if (w == lastWord) {
+                    // only pairs (i, i+1) with i + 1 < bitCount
+                    int pairs = (int) (bitCount - 1 - ((long) w << 6));
+                    diff = pairs == 0 ? 0 : diff & (-1L << (64 - pairs));
+                }
+                transitions += Long.bitCount(diff);
+            }
+            return transitions;
+        }).sum();
+    }
+
+    //counts of every overlapping m-bit pattern, with the sequence wrapped around at the end
+    private long[] countPatterns(int m) {
+        int lastWord = (int) ((bitCount - 1) >>> 6);
+        int chunks = lastWord / CHUNK_WORDS + 1;
+        int mask = (1 << m) - 1;
+        return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            long[] counts = new long[1 << m];
+            long from = (long) c * CHUNK_WORDS * 64;
+            long to = Math.min(bitCount, from + CHUNK_WORDS * 64L);
+            // prime the window with the m - 1 bits preceding this chunk (wrapping to the end of the stream)
+            int window = 0;
+            for (int i = m - 1; i > 0; i--) {
+                window = (window << 1) | bitAt(Math.floorMod(from - i, bitCount));
+            }
+            for (long pos = from; pos < to; pos += 64) {
+                long w = bitsAt(pos);
+                int n = (int) Math.min(64, to - pos);
+                for (int j = 0; j < n; j++) {
+                    window = ((window << 1) | (int) (w >>> (63 - j)) & 1) & mask;
+                    counts[window]++;
+                }
+            }
+            return counts;
+        }).reduce(new long[1 << m], (a, b) -> {
+            long[] sum = new long[a.length];
+            for (int i = 0; i < a.length; i++) {
+                sum[i] = a[i] + b[i];
+            }
+            return sum;
+        });
+    }
+
+    private int bitAt(long pos) {
+        return (int) (word((int) (pos >>> 6)) >>> (63 - (pos & 63))) & 1;
+    }
+
+    //counts of (m-1)-bit patterns from the m-bit counts; exact because the sequence is treated cyclically
+    private static long[] foldPatterns(long[] counts) {
+        long[] folded = new long[counts.length / 2];
+        for (int i = 0; i < counts.length; i++) {
+            folded[i >>> 1] += counts[i];
+        }
+        return folded;
+    }
+
+    private double psiSquared(long[] counts, int m) {
+        if (m <= 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (long c : counts) {
+            sum += (double) c * c;
+        }
+        return sum * Math.pow(2, m) / bitCount - bitCount;
+    }
+
+    //Berlekamp-Massey over GF(2) on packed words.
+    //The block is stored reversed (r[j] = s[end - j], least significant bit first) so the discrepancy
+    //sum of c[i] * s[n - i] becomes the parity of popcount(C AND a contiguous window of r).
+    private int linearComplexityOfBlock(long start, int len) {
+        int nWords = (len + 63) / 64 + 1;
+        long[] r = new long[nWords + 1];
+        long end = start + len - 1;
+        for (int k = 0; k < nWords; k++) {
+            int valid = len - 64 * k;
+            if (valid <= 0) {
+                break;
+            }
+            long v = bitsAt(end - 64L * k - 63);
+            r[k] = valid >= 64 ? v : v & ((1L << valid) - 1);
+        }
+
+        long[] c = new long[nWords];
+        long[] b = new long[nWords];
+        long[] t = new long[nWords];
+        c[0] = 1;
+        b[0] = 1;
+        int l = 0;
+        int m = -1;
+        for (int n = 0; n < len; n++) {
+            int base = len - 1 - n;
+            int d = 0;
+            for (int k = 0; k <= (l >>> 6); k++) {
+                d ^= Long.bitCount(c[k] & window(r, base + 64 * k));
+            }
+            if ((d & 1) == 1) {
+                System.arraycopy(c, 0, t, 0, nWords);
+                xorShifted(c, b, n - m);
+                if (l <= n / 2) {
+                    l = n + 1 - l;
+                    m = n;
+                    long[] swap = b;
+                    b = t;
+                    t = swap;
+                }
+            }
+        }
+        return l;
+    }
+
+    //64 bits of a least-significant-first packed array starting at bit index pos
+    private static long window(long[] bits, int pos) {
+        int w = pos >>> 6;
+        int shift = pos & 63;
+        long lo = w < bits.length ? bits[w] >>> shift : 0;
+        return (shift == 0 || w + 1 >= bits.length) ? lo : lo | (bits[w + 1] << (64 - shift));
+    }
+
+    //target ^= source << shift (least-significant-first packing), truncated to target's length
+    private static void xorShifted(long[] target, long[] source, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int k = target.length - 1; k >= wordShift; k--) {
+            int s = k - wordShift;
+            long v = source[s] << bitShift;
+            if (bitShift != 0 && s > 0) {
+                v |= source[s - 1] >>> (64 - bitShift);
+            }
+            target[k] ^= v;
+        }
+    }
+
+    //complementary error function via the incomplete gamma function: erfc(x) = Q(1/2, x^2)
+    static double erfc(double x) {
+        return x < 0 ? 2 - igamc(0.5, x * x) : igamc(0.5, x * x);
+    }
+
+    //regularized upper incomplete gamma function Q(a, x)
+    static double igamc(double a, double x) {
+        if (x <= 0) {
+            return 1.0;
+        }
+        if (x < a + 1) {
+            // series representation of P(a, x)
+            double sum = 1.0 / a;
+            double term = sum;
+            for (int n = 1; n < 10000; n++) {
+                term *= x / (a + n);
+                sum += term;
+                if (Math.abs(term) < Math.abs(sum) * 1e-15) {
+                    break;
+                }
+            }
+            return 1.0 - sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+        }
+        // continued fraction (modified Lentz)
+        double b = x + 1 - a;
+        double c = 1.0 / 1e-300;
+        double d = 1.0 / b;
+        double h = d;
+        for (int i = 1; i < 10000; i++) {
+            double an = -i * (i - a);
+            b += 2;
+            d = an * d + b;
+            if (Math.abs(d) < 1e-300) d = 1e-300;
+            c = b + an / c;
+            if (Math.abs(c) < 1e-300) c = 1e-300;
+            d = 1.0 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+    }
+
+    //Lanczos approximation
+    private static double logGamma(double x) {
+        double[] coef = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+            -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double c : coef) {
+            ser += c / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+
+    public static void main(String[] args) {
+        // Example: qualify the default degree-24 polynomial with a 1 Mbit keystream
+        LFSR lfsr = new LFSR("101101110010101101011101");
+        KeystreamAnalyzer analyzer = KeystreamAnalyzer.ofBytes(lfsr, 1 << 17);
+        analyzer.printReport();
+        System.out.println("Qualified: " + (analyzer.allPass() ? "Yes" : "No"));
+    }
+}
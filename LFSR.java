@@ -1,7 +1,13 @@
+import codec.TextCodec;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
+import metrics.CipherMetrics;
 
-public class LFSR implements StreamCipher {
+public class LFSR implements ContinuousStreamCipher {
+    private static final CipherMetrics.Counter KEYSTREAM = CipherMetrics.counter("LFSR", "keystream");
     private static int[] defaultPolynom = {24, 4, 3, 1};
     private int[] polinom; //represents the indices of terms that appear in the polynomial used for feedback.
     protected long register;
@@ -12,6 +18,7 @@ public class LFSR implements StreamCipher {
         this.register = initRegister;
         this.polinom = polynom;
         generateMask(); // mask ensures the register length matches the polynomial’s degree.
+        reset();
     }
 
     public LFSR(String initRegister, int[] polynom) {
@@ -21,6 +28,7 @@ public class LFSR implements StreamCipher {
         }
         register = Long.parseLong(initRegister, 2);
         generateMask();
+        reset();
     }
 
     public LFSR(String initRegister) {
@@ -56,6 +64,7 @@ public class LFSR implements StreamCipher {
             key[byteIndex] |= (nextBit() << bitIndex);
             printFlipFlopState(i + 1, key[byteIndex]);
         }
+        KEYSTREAM.record(len);
         return key;
     }
 
@@ -81,13 +90,94 @@ public class LFSR implements StreamCipher {
         return encrypt(cipherBytes);
     }
 
-    public static String keyToStr(byte[] key, int bytesCount) {
-        StringBuilder strKey = new StringBuilder();
-        for (int i = 0; i < bytesCount; i++) {
-            String binarByte = String.format("%8s", Integer.toBinaryString(key[i] & 0xFF)).replace(' ', '0');
-            strKey.append(binarByte);
+    //next key byte, most significant bit first (same bit order as generateKey)
+    private byte nextByte() {
+        int b = 0;
+        for (int i = 0; i < 8; i++) {
+            b = (b << 1) | nextBit();
+        }
+        return (byte) b;
+    }
+
+    // Back to the start of the keystream
+    @Override
+    public void reset() {
+        currRegister = register;
+    }
+
+    // XORs the next len keystream bytes into in and writes the result to out, continuing from the previous call
+    @Override
+    public int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        for (int i = 0; i < len; i++) {
+            out[outOff + i] = (byte) (in[inOff + i] ^ nextByte());
         }
-        return strKey.toString();
+        KEYSTREAM.record(len);
+        return len;
+    }
+
+    // As above for all remaining bytes of in; heap buffers use the array path, direct buffers are read in place
+    @Override
+    public int update(ByteBuffer in, ByteBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (in.hasArray() && out.hasArray()) {
+            update(in.array(), in.arrayOffset() + in.position(), len, out.array(), out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + len);
+            return len;
+        }
+        for (int i = 0; i < len; i++) {
+            out.put((byte) (in.get() ^ nextByte()));
+        }
+        KEYSTREAM.record(len);
+        return len;
+    }
+
+    //the variants below restart the keystream and XOR it directly into the output without building a key array or
+    //printing the register state
+    @Override
+    public int encrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        reset();
+        return update(in, inOff, len, out, outOff);
+    }
+
+    @Override
+    public int decrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        return encrypt(in, inOff, len, out, outOff);
+    }
+
+    @Override
+    public int encrypt(ByteBuffer in, ByteBuffer out) {
+        reset();
+        return update(in, out);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer in, ByteBuffer out) {
+        return encrypt(in, out);
+    }
+
+    @Override
+    public void encryptInPlace(ByteBuffer buffer) {
+        reset();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            buffer.put(i, (byte) (buffer.get(i) ^ nextByte()));
+        }
+        KEYSTREAM.record(buffer.limit() - buffer.position());
+        buffer.position(buffer.limit());
+    }
+
+    @Override
+    public void decryptInPlace(ByteBuffer buffer) {
+        encryptInPlace(buffer);
+    }
+
+    public static String keyToStr(byte[] key, int bytesCount) {
+        return TextCodec.toBinary(key, 0, bytesCount);
     }
     private int polynomialMod(int value, int[] poly) {
         int modValue = value;
@@ -0,0 +1,51 @@
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+
+//JCA CipherSpi for "LFSR" over LFSR.java. The 8-byte key is the initial register (big-endian, top bit ignored)
+//of a degree-63 register with the primitive feedback polynomial x^63 + x^62 + 1; it must not be all zero.
+public final class LFSRCipherSpi extends StreamCipherSpi {
+    private static final int[] POLYNOM = {63, 62};
+    private static final long MASK = (1L << 63) - 1;
+
+    private LFSR lfsr;
+
+    public LFSRCipherSpi() {
+        super("NONE", 0, 0);
+    }
+
+    @Override
+    void start(byte[] key, byte[] iv) throws InvalidKeyException {
+        if (key.length != 8) {
+            throw new InvalidKeyException("LFSR key must be 8 bytes");
+        }
+        long register = 0;
+        for (byte b : key) {
+            register = (register << 8) | (b & 0xFF);
+        }
+        register &= MASK;
+        if (register == 0) {
+            throw new InvalidKeyException("LFSR register must not be all zero");
+        }
+        lfsr = new LFSR(register, POLYNOM);
+    }
+
+    @Override
+    void restart() {
+        lfsr.reset();
+    }
+
+    @Override
+    void process(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        lfsr.update(in, inOff, len, out, outOff);
+    }
+
+    @Override
+    void process(ByteBuffer in, ByteBuffer out) {
+        lfsr.update(in, out);
+    }
+
+    @Override
+    String parameterAlgorithm() {
+        return "LFSR";
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.CipherMetrics;
+import metrics.LatencyHistogram;
+
+//Load generator for EncryptionServer: each connection keeps a fixed number of requests in flight (pipelining) and
+//sends a new one for every response, for a warm-up period and then a measured period. Reports requests/sec,
+//throughput and latency percentiles of the measured period.
+//
+//  java LoadGenerator [--port 7070 | --unix /tmp/encryption.sock] [--algorithm AES] [--size 64]
+//                     [--connections 4] [--depth 16] [--warmup 2] [--seconds 10]
+public final class LoadGenerator {
+    private static final LatencyHistogram LATENCY = CipherMetrics.histogram("loadgen", "request");
+
+    private final SocketAddress address;
+    private final byte algorithm;
+    private final byte[] key;
+    private final byte[] payload;
+    private final int depth;
+    private final LongAdder requests = new LongAdder();
+
+    LoadGenerator(SocketAddress address, byte algorithm, int size, int depth) {
+        this.address = address;
+        this.algorithm = algorithm;
+        int blockSize = EncryptionProtocol.blockSize(algorithm);
+        this.key = new byte[algorithm == EncryptionProtocol.AES ? 16 : algorithm == EncryptionProtocol.DESEDE ? 24 : 8];
+        this.payload = new byte[Math.max(blockSize, size / blockSize * blockSize)];
+        this.depth = depth;
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(key);
+        key[0] &= 0x7F;
+        key[7] |= 1; // nonzero LFSR register
+        random.nextBytes(payload);
+    }
+
+    // Encrypts and decrypts the payload once and checks the round trip
+    void verify() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            byte[] encrypted = call(channel, EncryptionProtocol.ENCRYPT, payload);
+            byte[] decrypted = call(channel, EncryptionProtocol.DECRYPT, encrypted);
+            if (!Arrays.equals(payload, decrypted)) {
+                throw new IOException("Round trip through the server does not give the payload back");
+            }
+        }
+    }
+
+    private byte[] call(SocketChannel channel, byte op, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(EncryptionProtocol.REQUEST_HEADER + key.length + data.length);
+        EncryptionProtocol.putRequest(buffer, 0, op, algorithm, key, data, 0, data.length);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ByteBuffer header = readFully(channel, ByteBuffer.allocate(EncryptionProtocol.RESPONSE_HEADER));
+        if (header.get(8) != EncryptionProtocol.OK) {
+            throw new IOException("Server returned status " + header.get(8));
+        }
+        return readFully(channel, ByteBuffer.allocate(header.getInt(0) - 5)).array();
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by the server");
+            }
+        }
+        return buffer.flip();
+    }
+
+    // One connection: keeps depth requests in flight until deadline, recording latencies after measureFrom
+    void run(long measureFrom, long deadline) throws IOException {
+        int frame = EncryptionProtocol.REQUEST_HEADER + key.length + payload.length;
+        ByteBuffer out = ByteBuffer.allocateDirect(depth * frame);
+        ByteBuffer in = ByteBuffer.allocateDirect(depth * frame);
+        long[] sent = new long[depth]; // by id % depth: in-flight ids are always depth consecutive numbers
+        int nextId = 0;
+        int expected = 0;
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            for (; nextId < depth; nextId++) {
+                sent[nextId % depth] = System.nanoTime();
+                EncryptionProtocol.putRequest(out, nextId, EncryptionProtocol.ENCRYPT, algorithm, key, payload, 0,
+                        payload.length);
+            }
+            write(channel, out);
+            while (expected < nextId) {
+                if (channel.read(in) < 0) {
+                    throw new IOException("Connection closed by the server");
+                }
+                in.flip();
+                long now = System.nanoTime();
+                while (in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position())) {
+                    int length = in.getInt();
+                    int id = in.getInt();
+                    byte status = in.get();
+                    in.position(in.position() + length - 5);
+                    if (id != expected || status != EncryptionProtocol.OK) {
+                        throw new IOException("Unexpected response " + id + " with status " + status);
+                    }
+                    expected++;
+                    if (now >= measureFrom) {
+                        LATENCY.record(now - sent[id % depth]);
+                        requests.increment();
+                    }
+                    if (now < deadline) {
+                        sent[nextId % depth] = now;
+                        EncryptionProtocol.putRequest(out, nextId++, EncryptionProtocol.ENCRYPT, algorithm, key,
+                                payload, 0, payload.length);
+                    }
+                }
+                in.compact();
+                write(channel, out);
+            }
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        SocketAddress address = new InetSocketAddress("127.0.0.1", 7070);
+        String algorithm = "AES";
+        int size = 64;
+        int connections = 4;
+        int depth = 16;
+        int warmup = 2;
+        int seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    address = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[i + 1]));
+                    break;
+                case "--unix":
+                    address = UnixDomainSocketAddress.of(args[i + 1]);
+                    break;
+                case "--algorithm":
+                    algorithm = args[i + 1];
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(address, EncryptionProtocol.algorithm(algorithm), size, depth);
+        generator.verify();
+        long measureFrom = System.nanoTime() + warmup * 1_000_000_000L;
+        long deadline = measureFrom + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    generator.run(measureFrom, deadline);
+                } catch (IOException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "loadgen-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        long count = generator.requests.sum();
+        LatencyHistogram.Summary latency = LATENCY.summary();
+        System.out.printf("%s, %d-byte requests, %d connections x %d in flight%n",
+                algorithm, generator.payload.length, connections, depth);
+        System.out.printf("%.0f requests/s, %.1f MB/s%n", (double) count / seconds,
+                (double) count * generator.payload.length / seconds / 1e6);
+        System.out.printf("latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                latency.getP50() / 1e3, latency.getP90() / 1e3, latency.getP99() / 1e3, latency.getP999() / 1e3,
+                latency.getMax() / 1e3);
+    }
+}
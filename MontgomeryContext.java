@@ -0,0 +1,196 @@
+import java.math.BigInteger;
+
+//Precomputed per-modulus state for Montgomery arithmetic on int[] limbs (32-bit, least significant limb first).
+//A context is built once for an odd modulus and then reused for every multiplication under it, so no long division
+//is done per step. Only FixedBaseExponentiation's cached tables build on it: for plain exponentiation
+//BigInteger.modPow, whose Montgomery kernels HotSpot intrinsifies, is faster. BinaryGcd shares the limb conversions.
+class MontgomeryContext {
+    private static final long MASK = 0xFFFFFFFFL;
+
+    private final BigInteger modulus;
+    private final int[] n;      // modulus limbs
+    private final int len;      // number of limbs
+    private final int n0inv;    // -n^-1 mod 2^32
+    private final int[] r2;     // R^2 mod n, used to convert into Montgomery form
+    private final int[] one;    // R mod n, the Montgomery form of 1
+
+    public MontgomeryContext(BigInteger modulus) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0) || modulus.equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("Montgomery modulus must be odd and greater than 1");
+        }
+        this.modulus = modulus;
+        this.len = (modulus.bitLength() + 31) >>> 5;
+        this.n = toLimbs(modulus, len);
+
+        // Newton iteration for n[0]^-1 mod 2^32 (each step doubles the number of correct bits)
+        int inv = n[0];
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - n[0] * inv;
+        }
+        this.n0inv = -inv;
+
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * len);
+        this.one = toLimbs(r.mod(modulus), len);
+        this.r2 = toLimbs(r.multiply(r).mod(modulus), len);
+    }
+
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    // Limb-level access for engines built on this context (values in Montgomery form, t from newScratch)
+    int limbCount() {
+        return len;
+    }
+
+    int[] newScratch() {
+        return new int[2 * len + 2];
+    }
+
+    int[] montgomeryOne() {
+        return one.clone();
+    }
+
+    int[] toMontgomery(BigInteger x, int[] t) {
+        int[] limbs = toLimbs(x.signum() < 0 || x.compareTo(modulus) >= 0 ? x.mod(modulus) : x, len);
+        int[] result = new int[len];
+        multiply(limbs, r2, result, t);
+        return result;
+    }
+
+    BigInteger fromMontgomery(int[] a, int[] t) {
+        int[] unit = new int[len];
+        unit[0] = 1;
+        int[] result = new int[len];
+        multiply(a, unit, result, t);
+        return fromLimbs(result);
+    }
+
+    // result = a * b * R^-1 mod n (CIOS), t is scratch of at least len + 2 limbs
+    void multiply(int[] a, int[] b, int[] result, int[] t) {
+        java.util.Arrays.fill(t, 0, len + 2, 0);
+        for (int i = 0; i < len; i++) {
+            long bi = b[i] & MASK;
+            long c = 0;
+            for (int j = 0; j < len; j++) {
+                long s = (t[j] & MASK) + (a[j] & MASK) * bi + c;
+                t[j] = (int) s;
+                c = s >>> 32;
+            }
+            long s = (t[len] & MASK) + c;
+            t[len] = (int) s;
+            t[len + 1] = (int) (s >>> 32);
+
+            long m = (t[0] * n0inv) & MASK;
+            c = ((t[0] & MASK) + m * (n[0] & MASK)) >>> 32;
+            for (int j = 1; j < len; j++) {
+                s = (t[j] & MASK) + m * (n[j] & MASK) + c;
+                t[j - 1] = (int) s;
+                c = s >>> 32;
+            }
+            s = (t[len] & MASK) + c;
+            t[len - 1] = (int) s;
+            t[len] = t[len + 1] + (int) (s >>> 32);
+        }
+        finish(t, 0, t[len] != 0, result);
+    }
+
+    // result = a^2 * R^-1 mod n: schoolbook squaring (cross products once, then doubled) followed by reduction
+    void square(int[] a, int[] result, int[] t) {
+        int size = 2 * len + 1;
+        java.util.Arrays.fill(t, 0, size, 0);
+        for (int i = 0; i < len; i++) {
+            long ai = a[i] & MASK;
+            long c = 0;
+            for (int j = i + 1; j < len; j++) {
+                long s = (t[i + j] & MASK) + ai * (a[j] & MASK) + c;
+                t[i + j] = (int) s;
+                c = s >>> 32;
+            }
+            t[i + len] = (int) c;
+        }
+        // double the cross products and add the squares on the diagonal
+        int carry = 0;
+        for (int k = 0; k < 2 * len; k++) {
+            int v = t[k];
+            t[k] = (v << 1) | carry;
+            carry = v >>> 31;
+        }
+        long c = 0;
+        for (int i = 0; i < len; i++) {
+            long ai = a[i] & MASK;
+            long sq = ai * ai;
+            long s = (t[2 * i] & MASK) + (sq & MASK) + c;
+            t[2 * i] = (int) s;
+            s = (t[2 * i + 1] & MASK) + (sq >>> 32) + (s >>> 32);
+            t[2 * i + 1] = (int) s;
+            c = s >>> 32;
+        }
+
+        // Montgomery reduction, one limb at a time
+        int top = 0;
+        for (int i = 0; i < len; i++) {
+            long m = (t[i] * n0inv) & MASK;
+            c = 0;
+            for (int j = 0; j < len; j++) {
+                long s = (t[i + j] & MASK) + m * (n[j] & MASK) + c;
+                t[i + j] = (int) s;
+                c = s >>> 32;
+            }
+            for (int k = i + len; c != 0 && k < 2 * len; k++) {
+                long s = (t[k] & MASK) + c;
+                t[k] = (int) s;
+                c = s >>> 32;
+            }
+            top += (int) c;
+        }
+        finish(t, len, top != 0, result);
+    }
+
+    // copies t[from .. from + len) into result, subtracting n once if the value is not below it
+    private void finish(int[] t, int from, boolean overflow, int[] result) {
+        boolean subtract = overflow;
+        if (!subtract) {
+            subtract = true; // equal counts as not below
+            for (int j = len - 1; j >= 0; j--) {
+                int cmp = Integer.compareUnsigned(t[from + j], n[j]);
+                if (cmp != 0) {
+                    subtract = cmp > 0;
+                    break;
+                }
+            }
+        }
+        if (subtract) {
+            long borrow = 0;
+            for (int j = 0; j < len; j++) {
+                long d = (t[from + j] & MASK) - (n[j] & MASK) - borrow;
+                result[j] = (int) d;
+                borrow = (d >>> 63);
+            }
+        } else {
+            System.arraycopy(t, from, result, 0, len);
+        }
+    }
+
+    static int[] toLimbs(BigInteger x, int len) {
+        int[] limbs = new int[len];
+        byte[] bytes = x.toByteArray(); // big-endian, may carry a leading sign byte
+        for (int i = 0; i < bytes.length && i < 4 * len; i++) {
+            limbs[i >>> 2] |= (bytes[bytes.length - 1 - i] & 0xFF) << (8 * (i & 3));
+        }
+        return limbs;
+    }
+
+    static BigInteger fromLimbs(int[] limbs) {
+        byte[] bytes = new byte[4 * limbs.length + 1]; // leading zero keeps the value positive
+        for (int i = 0; i < limbs.length; i++) {
+            int v = limbs[i];
+            int pos = bytes.length - 1 - 4 * i;
+            bytes[pos] = (byte) v;
+            bytes[pos - 1] = (byte) (v >>> 8);
+            bytes[pos - 2] = (byte) (v >>> 16);
+            bytes[pos - 3] = (byte) (v >>> 24);
+        }
+        return new BigInteger(bytes);
+    }
+}
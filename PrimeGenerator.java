@@ -0,0 +1,219 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.PrimeSearchEvent;
+
+//Random prime generation for RSA: an incremental sieve over a window of odd candidates against the small primes,
+//then Miller-Rabin on the survivors. Several workers race on independent windows and stop as soon as enough
+//primes are found.
+class PrimeGenerator {
+    private static final int SIEVE_LIMIT = 1 << 15;
+    private static final int[] SMALL_PRIMES = smallPrimes(SIEVE_LIMIT); // odd primes below SIEVE_LIMIT
+    private static final int MIN_BITS = 16; // candidates must be larger than every sieving prime
+
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread t = new Thread(r, "prime-search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private PrimeGenerator() {
+    }
+
+    // A random prime of exactly the given bit length, with its top two bits set
+    public static BigInteger generatePrime(int bits) {
+        return generatePrimes(bits, 1).get(0);
+    }
+
+    // count distinct random primes of the given bit length, searched on all cores
+    public static List<BigInteger> generatePrimes(int bits, int count) {
+        return generatePrimes(bits, count, null);
+    }
+
+    // As above, but only primes r with gcd(publicExponent, r - 1) = 1, so a fixed public exponent stays invertible
+    public static List<BigInteger> generatePrimes(int bits, int count, BigInteger publicExponent) {
+        if (bits < MIN_BITS) {
+            throw new IllegalArgumentException("Prime size must be at least " + MIN_BITS + " bits");
+        }
+        PrimeSearchEvent event = new PrimeSearchEvent();
+        event.begin();
+        LongAdder candidates = new LongAdder();
+        List<BigInteger> primes = new ArrayList<>(count);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> workers = new ArrayList<>(WORKERS);
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(POOL.submit(() -> {
+                SecureRandom random = RANDOM.get();
+                while (!done.get()) {
+                    BigInteger prime = searchWindow(bits, random, done, publicExponent, candidates);
+                    if (prime == null) {
+                        continue;
+                    }
+                    synchronized (primes) {
+                        if (primes.size() < count && !primes.contains(prime)) {
+                            primes.add(prime);
+                        }
+                        if (primes.size() == count) {
+                            done.set(true);
+                        }
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            done.set(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Prime search interrupted", e);
+        } catch (ExecutionException e) {
+            done.set(true);
+            throw new RuntimeException("Prime search failed", e.getCause());
+        }
+        event.bits = bits;
+        event.count = count;
+        event.candidates = candidates.sum();
+        event.commit();
+        return primes;
+    }
+
+    // Miller-Rabin rounds for a 2^-100 error bound on random candidates (FIPS 186-4, table C.3)
+    public static int millerRabinRounds(int bits) {
+        if (bits >= 1536) return 3;
+        if (bits >= 1024) return 4;
+        if (bits >= 512) return 7;
+        if (bits >= 256) return 16;
+        return 40;
+    }
+
+    // Trial division by the small primes, then Miller-Rabin with the given number of random bases
+    public static boolean isProbablePrime(BigInteger n, int rounds) {
+        if (n.compareTo(BigInteger.valueOf(SIEVE_LIMIT)) < 0) {
+            int v = n.intValue();
+            if (v < 2) return false;
+            if (v == 2) return true;
+            if ((v & 1) == 0) return false;
+            for (int p : SMALL_PRIMES) {
+                if (p * p > v) return true;
+                if (v % p == 0) return false;
+            }
+            return true;
+        }
+        if (!n.testBit(0)) {
+            return false;
+        }
+        byte[] bytes = n.toByteArray();
+        for (int p : SMALL_PRIMES) {
+            if (remainder(bytes, p) == 0) {
+                return false;
+            }
+        }
+        return millerRabin(n, rounds, RANDOM.get());
+    }
+
+    //sieves one window of odd candidates from a random start and tests the survivors in order, counting Miller-Rabin runs
+    private static BigInteger searchWindow(int bits, SecureRandom random, AtomicBoolean done, BigInteger publicExponent,
+                                           LongAdder candidates) {
+        BigInteger start = new BigInteger(bits, random).setBit(bits - 1).setBit(bits - 2).setBit(0);
+        int window = Math.max(64, 2 * bits); // candidates start + 2i, i < window
+        boolean[] composite = new boolean[window];
+        byte[] bytes = start.toByteArray();
+        for (int p : SMALL_PRIMES) {
+            int r = remainder(bytes, p);
+            // first i with start + 2i = 0 (mod p): i = -r * 2^-1 mod p
+            int i = (int) ((long) ((p - r) % p) * ((p + 1) / 2) % p);
+            for (; i < window; i += p) {
+                composite[i] = true;
+            }
+        }
+        int rounds = millerRabinRounds(bits);
+        for (int i = 0; i < window && !done.get(); i++) {
+            if (composite[i]) {
+                continue;
+            }
+            BigInteger candidate = start.add(BigInteger.valueOf(2L * i));
+            if (candidate.bitLength() != bits) {
+                return null;
+            }
+            if (publicExponent != null && !BinaryGcd.gcd(candidate.subtract(BigInteger.ONE), publicExponent).equals(BigInteger.ONE)) {
+                continue;
+            }
+            candidates.increment();
+            if (millerRabin(candidate, rounds, random)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean millerRabin(BigInteger n, int rounds, SecureRandom random) {
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        int s = nMinusOne.getLowestSetBit();
+        BigInteger d = nMinusOne.shiftRight(s);
+        BigInteger upper = n.subtract(BigInteger.valueOf(3));
+
+        for (int round = 0; round < rounds; round++) {
+            BigInteger a;
+            do {
+                a = new BigInteger(n.bitLength(), random);
+            } while (a.compareTo(upper) > 0);
+            a = a.add(BigInteger.TWO); // base in [2, n - 2]
+
+            BigInteger x = a.modPow(d, n);
+            if (x.equals(BigInteger.ONE) || x.equals(nMinusOne)) {
+                continue;
+            }
+            boolean witness = true;
+            for (int r = 1; r < s; r++) {
+                x = x.multiply(x).mod(n);
+                if (x.equals(nMinusOne)) {
+                    witness = false;
+                    break;
+                }
+                if (x.equals(BigInteger.ONE)) {
+                    break;
+                }
+            }
+            if (witness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //remainder of a big-endian two's complement (non-negative) byte array by a small divisor
+    private static int remainder(byte[] bytes, int divisor) {
+        int r = 0;
+        for (byte b : bytes) {
+            r = ((r << 8) | (b & 0xFF)) % divisor;
+        }
+        return r;
+    }
+
+    private static int[] smallPrimes(int limit) {
+        boolean[] composite = new boolean[limit];
+        List<Integer> primes = new ArrayList<>();
+        for (int i = 3; i < limit; i += 2) {
+            if (composite[i]) {
+                continue;
+            }
+            primes.add(i);
+            for (long j = (long) i * i; j < limit; j += 2L * i) {
+                composite[(int) j] = true;
+            }
+        }
+        return primes.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,370 @@
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import metrics.CipherMetrics;
+import metrics.LatencyHistogram;
+import metrics.RSAKeyGenerationEvent;
+import metrics.RSAPrivateOperationEvent;
+
+class RSA {
+
+    private static final int KEY_SIZE = 2048;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int HASH_LENGTH = 32; // SHA-256 output used by OAEP
+    private static final BigInteger F4 = BigInteger.valueOf(65537); // default public exponent
+
+    private static final CipherMetrics.Counter ENCRYPTED = CipherMetrics.counter("RSA", "encrypt");
+    private static final CipherMetrics.Counter DECRYPTED = CipherMetrics.counter("RSA", "decrypt");
+    private static final CipherMetrics.Counter PUBLIC_BATCH = CipherMetrics.counter("RSA", "public-batch");
+    private static final CipherMetrics.Counter SIGNED = CipherMetrics.counter("RSA", "sign");
+    private static final CipherMetrics.Counter VERIFIED = CipherMetrics.counter("RSA", "verify");
+    private static final LatencyHistogram PRIVATE_LATENCY = CipherMetrics.histogram("RSA", "private");
+    private static final LatencyHistogram KEYGEN_LATENCY = CipherMetrics.histogram("RSA", "keygen");
+
+    // Runs the per-prime CRT exponentiations of private-key operations concurrently
+    private static final ExecutorService CRT_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "rsa-crt");
+                t.setDaemon(true);
+                return t;
+            });
+
+    public static void main(String[] args) {
+        Scanner scanner = new Scanner(System.in);
+
+        // Input: Plain text
+        System.out.print("Enter the plain text: ");
+        String plainText = scanner.nextLine();
+
+        System.out.println("\nEncryption and Decryption Process:\n");
+
+        // One key pair for the whole message
+        RSAKeyPair keyPair = generateRSAKeys(KEY_SIZE);
+
+        // Encrypt the message bytes in OAEP-padded blocks
+        byte[] encrypted = encrypt(keyPair, plainText.getBytes(StandardCharsets.UTF_8));
+
+        // Decrypt the blocks using CRT
+        byte[] decrypted = decrypt(keyPair, encrypted);
+
+        // Output results
+        System.out.println("p: " + keyPair.getP());
+        System.out.println("q: " + keyPair.getQ());
+        System.out.println("Public Key (e): " + keyPair.getPublicKey());
+        System.out.println("Private Key (d): " + keyPair.getPrivateKey());
+        System.out.println("Blocks: " + encrypted.length / blockLength(keyPair));
+        System.out.println("Cipher Text (Hex): " + new BigInteger(1, encrypted).toString(16));
+        System.out.println("Decrypted Text: " + new String(decrypted, StandardCharsets.UTF_8));
+        System.out.println("------------------------------------\n");
+
+        scanner.close();
+    }
+
+    // Encrypt a message of any length: split it into chunks that fit one OAEP block and encrypt the blocks in parallel
+    // The result is the concatenation of modulus-sized blocks
+    static byte[] encrypt(RSAKeyPair publicKey, byte[] message) {
+        int k = blockLength(publicKey);
+        int chunk = k - 2 * HASH_LENGTH - 2;
+        if (chunk <= 0) {
+            throw new IllegalArgumentException("Modulus too small for OAEP padding");
+        }
+        int blocks = Math.max(1, (message.length + chunk - 1) / chunk);
+        byte[] cipherText = new byte[blocks * k];
+        IntStream.range(0, blocks).parallel().forEach(i -> {
+            int from = i * chunk;
+            int len = Math.min(chunk, message.length - from);
+            BigInteger m = new BigInteger(1, oaepEncode(message, from, len, k));
+            BigInteger c = m.modPow(publicKey.getPublicKey(), publicKey.getN());
+            toBytes(c, cipherText, i * k, k);
+        });
+        ENCRYPTED.record(blocks, message.length);
+        return cipherText;
+    }
+
+    // Decrypt the output of encrypt, block by block in parallel
+    static byte[] decrypt(RSAKeyPair privateKey, byte[] cipherText) {
+        int k = blockLength(privateKey);
+        if (cipherText.length == 0 || cipherText.length % k != 0) {
+            throw new IllegalArgumentException("Cipher text is not a whole number of blocks");
+        }
+        int blocks = cipherText.length / k;
+        byte[][] plainBlocks = new byte[blocks][];
+        IntStream.range(0, blocks).parallel().forEach(i -> {
+            BigInteger c = new BigInteger(1, Arrays.copyOfRange(cipherText, i * k, (i + 1) * k));
+            if (c.compareTo(privateKey.getN()) >= 0) {
+                throw new IllegalArgumentException("Decryption error");
+            }
+            byte[] em = new byte[k];
+            toBytes(decryptWithCRT(c, privateKey), em, 0, k);
+            plainBlocks[i] = oaepDecode(em);
+        });
+        DECRYPTED.record(blocks, cipherText.length);
+        int total = 0;
+        for (byte[] block : plainBlocks) {
+            total += block.length;
+        }
+        byte[] message = new byte[total];
+        int offset = 0;
+        for (byte[] block : plainBlocks) {
+            System.arraycopy(block, 0, message, offset, block.length);
+            offset += block.length;
+        }
+        return message;
+    }
+
+    // Raw RSA on many values under one public key: BigInteger.modPow on each value, spread over the common pool.
+    // Nothing is precomputed or shared per modulus, and e = 65537 takes no special path beyond modPow's own
+    static BigInteger[] encryptBatch(RSAKeyPair publicKey, BigInteger[] values) {
+        PUBLIC_BATCH.record(values.length, (long) values.length * blockLength(publicKey));
+        return publicExponentiation(publicKey, values);
+    }
+
+    // Raw RSA signature of a message representative (0 <= message < n), computed with the CRT private key
+    static BigInteger sign(RSAKeyPair privateKey, BigInteger message) {
+        SIGNED.record(blockLength(privateKey));
+        return decryptWithCRT(message, privateKey);
+    }
+
+    static boolean verify(RSAKeyPair publicKey, BigInteger signature, BigInteger message) {
+        VERIFIED.record(blockLength(publicKey));
+        return signature.modPow(publicKey.getPublicKey(), publicKey.getN()).equals(message);
+    }
+
+    // Verifies signatures[i] against messages[i] for every i; the public exponentiations are a parallel
+    // BigInteger.modPow per signature, as in encryptBatch
+    static boolean[] verifyBatch(RSAKeyPair publicKey, BigInteger[] signatures, BigInteger[] messages) {
+        if (signatures.length != messages.length) {
+            throw new IllegalArgumentException("Signature and message counts differ");
+        }
+        VERIFIED.record(signatures.length, (long) signatures.length * blockLength(publicKey));
+        BigInteger[] recovered = publicExponentiation(publicKey, signatures);
+        boolean[] valid = new boolean[signatures.length];
+        for (int i = 0; i < valid.length; i++) {
+            valid[i] = recovered[i].equals(messages[i]);
+        }
+        return valid;
+    }
+
+    //values[i]^e mod n for every i, one independent modPow per value on parallel threads
+    private static BigInteger[] publicExponentiation(RSAKeyPair publicKey, BigInteger[] values) {
+        BigInteger e = publicKey.getPublicKey();
+        BigInteger n = publicKey.getN();
+        return Arrays.stream(values).parallel().map(v -> v.modPow(e, n)).toArray(BigInteger[]::new);
+    }
+
+    // Size of one cipher text block in bytes
+    static int blockLength(RSAKeyPair keyPair) {
+        return (keyPair.getN().bitLength() + 7) / 8;
+    }
+
+    // EME-OAEP encoding (RFC 8017, section 7.1.1) with SHA-256, MGF1 and an empty label
+    private static byte[] oaepEncode(byte[] message, int from, int len, int k) {
+        MessageDigest sha256 = sha256();
+        int dbLength = k - HASH_LENGTH - 1;
+        byte[] em = new byte[k];
+        // DB = lHash || PS || 0x01 || M, stored after the 0x00 byte and the seed
+        int db = 1 + HASH_LENGTH;
+        System.arraycopy(sha256.digest(), 0, em, db, HASH_LENGTH);
+        em[k - len - 1] = 0x01;
+        System.arraycopy(message, from, em, k - len, len);
+
+        byte[] seed = new byte[HASH_LENGTH];
+        RANDOM.nextBytes(seed);
+        System.arraycopy(seed, 0, em, 1, HASH_LENGTH);
+        mgf1Xor(sha256, seed, 0, HASH_LENGTH, em, db, dbLength);
+        mgf1Xor(sha256, em, db, dbLength, em, 1, HASH_LENGTH);
+        return em;
+    }
+
+    private static byte[] oaepDecode(byte[] em) {
+        MessageDigest sha256 = sha256();
+        int k = em.length;
+        int db = 1 + HASH_LENGTH;
+        int dbLength = k - HASH_LENGTH - 1;
+        mgf1Xor(sha256, em, db, dbLength, em, 1, HASH_LENGTH);
+        mgf1Xor(sha256, em, 1, HASH_LENGTH, em, db, dbLength);
+
+        // Constant time (RFC 8017, 7.1.2 note): every byte of the padding is examined whatever its value, and the
+        // checks are combined in int masks (0 or -1), so neither timing nor the error reveals which check failed
+        byte[] lHash = sha256.digest();
+        int bad = em[0] & 0xFF;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            bad |= (em[db + i] ^ lHash[i]) & 0xFF;
+        }
+        int searching = -1; // -1 until the 0x01 separator is seen
+        int separator = 0;
+        for (int i = db + HASH_LENGTH; i < k; i++) {
+            int b = em[i] & 0xFF;
+            int isZero = (b - 1) >> 31;
+            int isOne = ((b ^ 0x01) - 1) >> 31;
+            bad |= searching & ~isZero & ~isOne;
+            separator |= searching & isOne & i;
+            searching &= ~isOne;
+        }
+        bad |= searching;
+        if (bad != 0) {
+            throw new IllegalArgumentException("Decryption error");
+        }
+        return Arrays.copyOfRange(em, separator + 1, k);
+    }
+
+    // XORs MGF1(seed) into target[targetOff .. targetOff + len)
+    private static void mgf1Xor(MessageDigest digest, byte[] seed, int seedOff, int seedLen,
+                                byte[] target, int targetOff, int len) {
+        byte[] counter = new byte[4];
+        for (int done = 0, c = 0; done < len; c++) {
+            counter[0] = (byte) (c >>> 24);
+            counter[1] = (byte) (c >>> 16);
+            counter[2] = (byte) (c >>> 8);
+            counter[3] = (byte) c;
+            digest.update(seed, seedOff, seedLen);
+            digest.update(counter);
+            byte[] mask = digest.digest();
+            for (int i = 0; i < mask.length && done < len; i++, done++) {
+                target[targetOff + done] ^= mask[i];
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Writes x as an unsigned big-endian integer of exactly len bytes
+    private static void toBytes(BigInteger x, byte[] out, int offset, int len) {
+        byte[] bytes = x.toByteArray();
+        int skip = bytes.length > len ? bytes.length - len : 0; // leading sign byte
+        int copy = bytes.length - skip;
+        System.arraycopy(bytes, skip, out, offset + len - copy, copy);
+    }
+
+    // Generate RSA keys with a modulus of the given size (two primes of half that size) and e = 65537
+    static RSAKeyPair generateRSAKeys(int modulusBits) {
+        return generateRSAKeys(modulusBits, 2, F4);
+    }
+
+    // Generate multi-prime RSA keys (RFC 8017) with e = 65537
+    static RSAKeyPair generateRSAKeys(int modulusBits, int primeCount) {
+        return generateRSAKeys(modulusBits, primeCount, F4);
+    }
+
+    // Generate multi-prime RSA keys: primeCount distinct primes of about modulusBits / primeCount bits each.
+    // A fixed publicExponent (3, 65537, ...) keeps encryption and verification cheap; null picks a random e of full size.
+    static RSAKeyPair generateRSAKeys(int modulusBits, int primeCount, BigInteger publicExponent) {
+        if (primeCount < 2) {
+            throw new IllegalArgumentException("RSA needs at least two primes");
+        }
+        if (publicExponent != null && (publicExponent.compareTo(BigInteger.valueOf(3)) < 0 || !publicExponent.testBit(0))) {
+            throw new IllegalArgumentException("Public exponent must be odd and at least 3");
+        }
+        RSAKeyGenerationEvent event = new RSAKeyGenerationEvent();
+        event.begin();
+        long start = KEYGEN_LATENCY.start();
+        int size = modulusBits / primeCount;
+        int larger = modulusBits % primeCount; // this many primes get one extra bit
+        BigInteger[] primes = new BigInteger[primeCount];
+        BigInteger n;
+        do {
+            List<BigInteger> found = new ArrayList<>(PrimeGenerator.generatePrimes(size, primeCount - larger, publicExponent));
+            if (larger > 0) {
+                found.addAll(PrimeGenerator.generatePrimes(size + 1, larger, publicExponent));
+            }
+            found.toArray(primes);
+            // Calculate n = product of the primes
+            n = BigInteger.ONE;
+            for (BigInteger prime : primes) {
+                n = n.multiply(prime);
+            }
+            // every prime has its top two bits set, so only products of three or more primes can come up one bit short
+        } while (n.bitLength() != modulusBits);
+
+        // Calculate phi(n) = product of (r_i - 1)
+        BigInteger phi = BigInteger.ONE;
+        for (BigInteger prime : primes) {
+            phi = phi.multiply(prime.subtract(BigInteger.ONE));
+        }
+
+        // Choose e such that 1 < e < phi(n) and gcd(e, phi(n)) = 1
+        // (a fixed exponent already satisfies this: the primes were chosen with gcd(e, r_i - 1) = 1)
+        BigInteger e = publicExponent;
+        while (e == null || e.compareTo(BigInteger.ONE) <= 0 || e.compareTo(phi) >= 0 || !BinaryGcd.gcd(e, phi).equals(BigInteger.ONE)) {
+            e = new BigInteger(phi.bitLength(), RANDOM);
+        }
+
+        // Calculate d = e^-1 mod phi(n) with the binary extended GCD
+        BigInteger d = BinaryGcd.modInverse(e, phi);
+
+        RSAKeyPair keyPair = new RSAKeyPair(primes, n, e, d);
+        KEYGEN_LATENCY.recordSince(start);
+        event.modulusBits = modulusBits;
+        event.primes = primeCount;
+        event.commit();
+        return keyPair;
+    }
+
+    // Decrypt using Chinese Remainder Theorem, with base blinding against timing attacks:
+    // the exponentiation runs on c * r^e, and the result is multiplied by r^-1 afterwards.
+    // The blinding pair is cached per key and refreshed by squaring, so blinding costs
+    // two modular multiplications here plus two in the key pair's refresh.
+    static BigInteger decryptWithCRT(BigInteger cipherText, RSAKeyPair keyPair) {
+        if (!keyPair.hasPrivateKey()) {
+            throw new IllegalArgumentException("Private key operation with a public key");
+        }
+        RSAPrivateOperationEvent event = new RSAPrivateOperationEvent();
+        event.begin();
+        long start = PRIVATE_LATENCY.start();
+        BigInteger n = keyPair.getN();
+        BigInteger[] blinding = keyPair.nextBlinding();
+        BigInteger m = unblindedCRT(cipherText.multiply(blinding[0]).mod(n), keyPair);
+        BigInteger result = m.multiply(blinding[1]).mod(n);
+        PRIVATE_LATENCY.recordSince(start);
+        if (event.shouldCommit()) {
+            event.modulusBits = keyPair.getN().bitLength();
+            event.primes = keyPair.getPrimeCount();
+            event.commit();
+        }
+        return result;
+    }
+
+    // The per-prime exponents and coefficients come precomputed with the key pair.
+    // The residues for the second and later primes are computed on CRT_POOL while the caller computes the first.
+    private static BigInteger unblindedCRT(BigInteger cipherText, RSAKeyPair keyPair) {
+        int k = keyPair.getPrimeCount();
+        List<CompletableFuture<BigInteger>> pending = new ArrayList<>(k - 1);
+        for (int i = 1; i < k; i++) {
+            int index = i;
+            pending.add(CompletableFuture.supplyAsync(
+                    () -> cipherText.modPow(keyPair.getExponent(index), keyPair.getPrime(index)), CRT_POOL));
+        }
+        BigInteger m1 = cipherText.modPow(keyPair.getDP(), keyPair.getP());
+        BigInteger m2 = pending.get(0).join();
+
+        // Garner recombination: m = m2 + q * (qInv * (m1 - m2) mod p)
+        BigInteger h = keyPair.getQInv().multiply(m1.subtract(m2)).mod(keyPair.getP());
+        BigInteger m = m2.add(h.multiply(keyPair.getQ()));
+
+        // Remaining primes: m = m + R * ((m_i - m) * t_i mod r_i), R = r_1 * ... * r_(i-1)
+        BigInteger r = keyPair.getP();
+        for (int i = 2; i < k; i++) {
+            r = r.multiply(keyPair.getPrime(i - 1));
+            BigInteger mi = pending.get(i - 1).join();
+            h = mi.subtract(m).multiply(keyPair.getCoefficient(i)).mod(keyPair.getPrime(i));
+            m = m.add(r.multiply(h));
+        }
+        return m;
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAKey;
+import java.security.interfaces.RSAMultiPrimePrivateCrtKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.RSAOtherPrimeInfo;
+import java.util.Arrays;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+
+//JCA CipherSpi for "RSA/ECB/OAEPWithSHA-256AndMGF1Padding" over RSA.encrypt / RSA.decrypt (CRT with blinding).
+//One block per doFinal, as with any JCA RSA cipher: at most modulus bytes - 66 of plain text, or exactly one
+//modulus-sized cipher text. Input is collected across update calls.
+//Note that MGF1 uses SHA-256 here, where SunJCE's OAEPWithSHA-256AndMGF1Padding defaults to MGF1 with SHA-1; to
+//interoperate, give SunJCE new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSpecified.DEFAULT).
+public final class RSACipherSpi extends CipherSpi {
+    private static final OAEPParameterSpec OAEP = new OAEPParameterSpec(
+            "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+    private static final int OAEP_OVERHEAD = 2 * 32 + 2;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private RSAKeyPair key;
+    private boolean encrypting;
+
+    public RSACipherSpi() {
+    }
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!mode.equalsIgnoreCase("ECB") && !mode.equalsIgnoreCase("NONE")) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (!padding.equalsIgnoreCase("OAEPWithSHA-256AndMGF1Padding") && !padding.equalsIgnoreCase("OAEPPadding")) {
+            throw new NoSuchPaddingException("Unsupported padding " + padding);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return 0;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        return key == null ? 0 : RSA.blockLength(key);
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance("OAEP");
+            params.init(OAEP);
+            return params;
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected int engineGetKeySize(Key key) throws InvalidKeyException {
+        if (!(key instanceof RSAKey)) {
+            throw new InvalidKeyException("Not an RSA key");
+        }
+        return ((RSAKey) key).getModulus().bitLength();
+    }
+
+    // The random source is not used: OAEP seeds come from RSA's own SecureRandom
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        encrypting = opmode == Cipher.ENCRYPT_MODE || opmode == Cipher.WRAP_MODE;
+        if (encrypting) {
+            if (!(key instanceof RSAPublicKey)) {
+                throw new InvalidKeyException("Encryption needs an RSA public key");
+            }
+            RSAPublicKey publicKey = (RSAPublicKey) key;
+            this.key = new RSAKeyPair(publicKey.getModulus(), publicKey.getPublicExponent());
+        } else {
+            if (!(key instanceof RSAPrivateCrtKey) && !(key instanceof RSAMultiPrimePrivateCrtKey)) {
+                throw new InvalidKeyException("Decryption needs an RSA private CRT key");
+            }
+            this.key = toKeyPair(key);
+        }
+        if (RSA.blockLength(this.key) <= OAEP_OVERHEAD) {
+            throw new InvalidKeyException("Modulus too small for OAEP padding");
+        }
+        buffer.reset();
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            if (!(params instanceof OAEPParameterSpec)) {
+                throw new InvalidAlgorithmParameterException("Expected an OAEPParameterSpec");
+            }
+            OAEPParameterSpec oaep = (OAEPParameterSpec) params;
+            AlgorithmParameterSpec mgf = oaep.getMGFParameters();
+            if (!oaep.getDigestAlgorithm().equalsIgnoreCase("SHA-256")
+                    || !oaep.getMGFAlgorithm().equalsIgnoreCase("MGF1")
+                    || !(mgf instanceof MGF1ParameterSpec)
+                    || !((MGF1ParameterSpec) mgf).getDigestAlgorithm().equalsIgnoreCase("SHA-256")
+                    || !(oaep.getPSource() instanceof PSource.PSpecified)
+                    || ((PSource.PSpecified) oaep.getPSource()).getValue().length != 0) {
+                throw new InvalidAlgorithmParameterException("Only OAEP with SHA-256, MGF1-SHA-256 and no label");
+            }
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        try {
+            engineInit(opmode, key, params == null ? null : params.getParameterSpec(OAEPParameterSpec.class), random);
+        } catch (InvalidParameterSpecException e) {
+            throw new InvalidAlgorithmParameterException(e);
+        }
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        buffer.write(input, inputOffset, inputLen);
+        return new byte[0];
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+        buffer.write(input, inputOffset, inputLen);
+        return 0;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        if (key == null) {
+            throw new IllegalStateException("Cipher not initialized");
+        }
+        if (input != null) {
+            buffer.write(input, inputOffset, inputLen);
+        }
+        byte[] data = buffer.toByteArray();
+        buffer.reset();
+        int k = RSA.blockLength(key);
+        try {
+            if (encrypting) {
+                if (data.length > k - OAEP_OVERHEAD) {
+                    throw new IllegalBlockSizeException("At most " + (k - OAEP_OVERHEAD) + " bytes per block");
+                }
+                return RSA.encrypt(key, data);
+            }
+            if (data.length != k) {
+                throw new IllegalBlockSizeException("Cipher text must be " + k + " bytes");
+            }
+            try {
+                return RSA.decrypt(key, data);
+            } catch (IllegalArgumentException e) {
+                throw new BadPaddingException("Decryption error");
+            }
+        } finally {
+            Arrays.fill(data, (byte) 0);
+        }
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        int needed = engineGetOutputSize(inputLen);
+        if (output.length - outputOffset < needed) {
+            throw new ShortBufferException("Output buffer needs " + needed + " bytes");
+        }
+        byte[] result = engineDoFinal(input, inputOffset, inputLen);
+        System.arraycopy(result, 0, output, outputOffset, result.length);
+        Arrays.fill(result, (byte) 0);
+        return result.length;
+    }
+
+    @Override
+    protected byte[] engineWrap(Key key) throws IllegalBlockSizeException, InvalidKeyException {
+        byte[] encoded = KeyWrapping.encode(key);
+        try {
+            return engineDoFinal(encoded, 0, encoded.length);
+        } catch (BadPaddingException e) {
+            throw new InvalidKeyException("Wrapping failed", e);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    @Override
+    protected Key engineUnwrap(byte[] wrappedKey, String wrappedKeyAlgorithm, int wrappedKeyType)
+            throws InvalidKeyException, NoSuchAlgorithmException {
+        byte[] encoded;
+        try {
+            encoded = engineDoFinal(wrappedKey, 0, wrappedKey.length);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new InvalidKeyException("Unwrapping failed", e);
+        }
+        try {
+            return KeyWrapping.decode(encoded, wrappedKeyAlgorithm, wrappedKeyType);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    //a private CRT key (two or more primes) as an RSAKeyPair
+    private static RSAKeyPair toKeyPair(Key key) {
+        BigInteger n;
+        BigInteger e;
+        BigInteger d;
+        BigInteger[] primes;
+        if (key instanceof RSAMultiPrimePrivateCrtKey) {
+            RSAMultiPrimePrivateCrtKey multi = (RSAMultiPrimePrivateCrtKey) key;
+            RSAOtherPrimeInfo[] others = multi.getOtherPrimeInfo();
+            primes = new BigInteger[2 + (others == null ? 0 : others.length)];
+            primes[0] = multi.getPrimeP();
+            primes[1] = multi.getPrimeQ();
+            for (int i = 2; i < primes.length; i++) {
+                primes[i] = others[i - 2].getPrime();
+            }
+            n = multi.getModulus();
+            e = multi.getPublicExponent();
+            d = multi.getPrivateExponent();
+        } else {
+            RSAPrivateCrtKey crt = (RSAPrivateCrtKey) key;
+            primes = new BigInteger[]{crt.getPrimeP(), crt.getPrimeQ()};
+            n = crt.getModulus();
+            e = crt.getPublicExponent();
+            d = crt.getPrivateExponent();
+        }
+        return new RSAKeyPair(primes, n, e, d);
+    }
+}
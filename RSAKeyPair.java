@@ -0,0 +1,129 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+// Helper class to store RSA keys
+// Holds the full CRT private key: the per-prime exponents and CRT coefficients
+// are computed once at construction. Two-prime keys use p, q, dp, dq and qInv; multi-prime keys (RFC 8017)
+// add r_i, d_i = d mod (r_i - 1) and t_i = (r_1 * ... * r_(i-1))^-1 mod r_i for every further prime.
+class RSAKeyPair {
+    private final BigInteger[] primes;
+    private final BigInteger n;
+    private final BigInteger publicKey;
+    private final BigInteger privateKey;
+    private final BigInteger[] exponents;    // d mod (r_i - 1)
+    private final BigInteger qInv;           // q^-1 mod p
+    private final BigInteger[] coefficients; // t_i for the third and later primes
+
+    // Blinding pair (r^e mod n, r^-1 mod n), created on first use, squared after every use
+    // and replaced by a fresh random r every BLINDING_REFRESH uses
+    private static final int BLINDING_REFRESH = 32;
+    private static final SecureRandom BLINDING_RANDOM = new SecureRandom();
+    private BigInteger blindingFactor;
+    private BigInteger unblindingFactor;
+    private int blindingUses;
+
+    // Public key only (n, e): enough for encryption and verification; the private-key getters are not available
+    public RSAKeyPair(BigInteger n, BigInteger publicKey) {
+        this.primes = new BigInteger[0];
+        this.n = n;
+        this.publicKey = publicKey;
+        this.privateKey = null;
+        this.exponents = new BigInteger[0];
+        this.coefficients = new BigInteger[0];
+        this.qInv = null;
+    }
+
+    public RSAKeyPair(BigInteger p, BigInteger q, BigInteger n, BigInteger publicKey, BigInteger privateKey) {
+        this(new BigInteger[]{p, q}, n, publicKey, privateKey);
+    }
+
+    public RSAKeyPair(BigInteger[] primes, BigInteger n, BigInteger publicKey, BigInteger privateKey) {
+        this.primes = primes.clone();
+        this.n = n;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.exponents = new BigInteger[primes.length];
+        this.coefficients = new BigInteger[primes.length];
+        BigInteger product = primes[0].multiply(primes[1]);
+        for (int i = 0; i < primes.length; i++) {
+            exponents[i] = privateKey.mod(primes[i].subtract(BigInteger.ONE));
+            if (i >= 2) {
+                coefficients[i] = BinaryGcd.modInverse(product, primes[i]);
+                product = product.multiply(primes[i]);
+            }
+        }
+        this.qInv = BinaryGcd.modInverse(primes[1], primes[0]);
+    }
+
+    public BigInteger getP() {
+        return primes[0];
+    }
+
+    public BigInteger getQ() {
+        return primes[1];
+    }
+
+    public BigInteger getN() {
+        return n;
+    }
+
+    public BigInteger getPublicKey() {
+        return publicKey;
+    }
+
+    public BigInteger getPrivateKey() {
+        return privateKey;
+    }
+
+    public BigInteger getDP() {
+        return exponents[0];
+    }
+
+    public BigInteger getDQ() {
+        return exponents[1];
+    }
+
+    public BigInteger getQInv() {
+        return qInv;
+    }
+
+    public boolean hasPrivateKey() {
+        return privateKey != null;
+    }
+
+    // 0 for a public key
+    public int getPrimeCount() {
+        return primes.length;
+    }
+
+    public BigInteger getPrime(int i) {
+        return primes[i];
+    }
+
+    public BigInteger getExponent(int i) {
+        return exponents[i];
+    }
+
+    public BigInteger getCoefficient(int i) {
+        return coefficients[i];
+    }
+
+    // The blinding pair for the next private-key operation; each call hands out a different pair
+    synchronized BigInteger[] nextBlinding() {
+        if (blindingFactor == null || blindingUses == BLINDING_REFRESH) {
+            BigInteger r;
+            do {
+                r = new BigInteger(n.bitLength(), BLINDING_RANDOM);
+            } while (r.signum() == 0 || r.compareTo(n) >= 0 || !BinaryGcd.gcd(r, n).equals(BigInteger.ONE));
+            blindingFactor = r.modPow(publicKey, n);
+            unblindingFactor = BinaryGcd.modInverse(r, n);
+            blindingUses = 0;
+        }
+        BigInteger[] pair = {blindingFactor, unblindingFactor};
+        // (r^2)^e = (r^e)^2 and (r^2)^-1 = (r^-1)^2
+        blindingFactor = blindingFactor.multiply(blindingFactor).mod(n);
+        unblindingFactor = unblindingFactor.multiply(unblindingFactor).mod(n);
+        blindingUses++;
+        return pair;
+    }
+}
@@ -0,0 +1,67 @@
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGeneratorSpi;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+
+//JCA KeyPairGeneratorSpi for "RSA" over RSA.generateRSAKeys (two primes). The keys are returned as the platform's
+//RSAPublicKey / RSAPrivateCrtKey so they work with any provider, RSACipherSpi included.
+//The SecureRandom argument is ignored: primes are drawn from PrimeGenerator's own SecureRandom.
+public final class RSAKeyPairGeneratorSpi extends KeyPairGeneratorSpi {
+    private static final int DEFAULT_KEY_SIZE = 2048;
+
+    private int keySize = DEFAULT_KEY_SIZE;
+    private BigInteger publicExponent = RSAKeyGenParameterSpec.F4;
+
+    public RSAKeyPairGeneratorSpi() {
+    }
+
+    @Override
+    public void initialize(int keysize, SecureRandom random) {
+        if (keysize < 512) {
+            throw new InvalidParameterException("RSA key size must be at least 512 bits");
+        }
+        this.keySize = keysize;
+        this.publicExponent = RSAKeyGenParameterSpec.F4;
+    }
+
+    @Override
+    public void initialize(AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidAlgorithmParameterException {
+        if (!(params instanceof RSAKeyGenParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("Expected an RSAKeyGenParameterSpec");
+        }
+        RSAKeyGenParameterSpec spec = (RSAKeyGenParameterSpec) params;
+        BigInteger e = spec.getPublicExponent();
+        if (spec.getKeysize() < 512) {
+            throw new InvalidAlgorithmParameterException("RSA key size must be at least 512 bits");
+        }
+        if (e.compareTo(BigInteger.valueOf(3)) < 0 || !e.testBit(0)) {
+            throw new InvalidAlgorithmParameterException("Public exponent must be odd and at least 3");
+        }
+        this.keySize = spec.getKeysize();
+        this.publicExponent = e;
+    }
+
+    @Override
+    public KeyPair generateKeyPair() {
+        RSAKeyPair keys = RSA.generateRSAKeys(keySize, 2, publicExponent);
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            return new KeyPair(
+                    factory.generatePublic(new RSAPublicKeySpec(keys.getN(), keys.getPublicKey())),
+                    factory.generatePrivate(new RSAPrivateCrtKeySpec(keys.getN(), keys.getPublicKey(),
+                            keys.getPrivateKey(), keys.getP(), keys.getQ(), keys.getDP(), keys.getDQ(),
+                            keys.getQInv())));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("RSA key factory not available", e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+//Bounded pool of pre-generated RSA key pairs for one key size.
+//When the depth falls to the low watermark a background thread refills it up to the high watermark,
+//so callers normally get a key pair without waiting for a prime search.
+class RSAKeyPairPool implements AutoCloseable {
+    private static final ThreadFactory REFILL_THREADS = refillThreadFactory();
+
+    private final int keySize;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final BlockingQueue<RSAKeyPair> ready;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private int failureStreak; // only touched by the refill thread holding the refilling flag
+    private volatile boolean closed;
+
+    // metrics
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile RuntimeException lastFailure;
+
+    public RSAKeyPairPool(int keySize, int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low < high");
+        }
+        this.keySize = keySize;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.ready = new LinkedBlockingQueue<>(highWatermark);
+        triggerRefill();
+    }
+
+    // A ready key pair, or null if the pool is empty (never blocks)
+    public RSAKeyPair poll() {
+        RSAKeyPair keyPair = ready.poll();
+        record(keyPair);
+        return keyPair;
+    }
+
+    // Waits up to the timeout for a key pair, returns null if none became ready
+    public RSAKeyPair take(long timeout, TimeUnit unit) throws InterruptedException {
+        RSAKeyPair keyPair = ready.poll();
+        if (keyPair == null) {
+            triggerRefill();
+            keyPair = ready.poll(timeout, unit);
+        }
+        record(keyPair);
+        return keyPair;
+    }
+
+    private void record(RSAKeyPair keyPair) {
+        if (keyPair != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        if (ready.size() <= lowWatermark) {
+            triggerRefill();
+        }
+    }
+
+    //starts one refill thread unless one is already running
+    private void triggerRefill() {
+        if (closed || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        REFILL_THREADS.newThread(this::refill).start();
+    }
+
+    private void refill() {
+        try {
+            while (!closed && ready.size() < highWatermark) {
+                long start = System.nanoTime();
+                RSAKeyPair keyPair = RSA.generateRSAKeys(keySize);
+                generationNanos.add(System.nanoTime() - start);
+                generated.increment();
+                failureStreak = 0;
+                if (!ready.offer(keyPair)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            lastFailure = e;
+            backOff();
+        } finally {
+            refilling.set(false);
+            // a consumer may have drained the pool between the last check and clearing the flag
+            if (!closed && ready.size() <= lowWatermark) {
+                triggerRefill();
+            }
+        }
+    }
+
+    //waits 10 ms, doubling per consecutive failure up to 1 s, so a generator that keeps failing is not respun hot
+    private void backOff() {
+        long millis = 10L << Math.min(failureStreak++, 7);
+        try {
+            Thread.sleep(Math.min(millis, 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getKeySize() {
+        return keySize;
+    }
+
+    public int getDepth() {
+        return ready.size();
+    }
+
+    public long getGeneratedCount() {
+        return generated.sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // Refill runs that ended in an exception from key generation
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    // The exception that ended the most recent failed refill run, or null
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    // Key pairs produced per second of refill work
+    public double getRefillRate() {
+        long nanos = generationNanos.sum();
+        return nanos == 0 ? 0.0 : generated.sum() * 1e9 / nanos;
+    }
+
+    public void printMetrics() {
+        System.out.printf("RSA-%d pool | depth: %d/%d | generated: %d | refill rate: %.2f keys/s | hits: %d | misses: %d | failures: %d\n",
+                keySize, getDepth(), highWatermark, getGeneratedCount(), getRefillRate(), getHitCount(), getMissCount(),
+                getFailureCount());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ready.clear();
+    }
+
+    //virtual threads when the runtime has them (Thread.ofVirtual, JDK 21+), daemon platform threads otherwise
+    private static ThreadFactory refillThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class).invoke(builder, "rsa-key-refill");
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return r -> {
+                Thread t = new Thread(r, "rsa-key-refill");
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+}
@@ -0,0 +1,34 @@
+//Bounded reorder buffer between parallel workers and one in-order consumer. Workers complete items out of order
+//with put(sequence, item); take() returns them strictly by sequence number. A worker more than capacity items
+//ahead of the consumer waits, which bounds the memory held by finished but unwritten items.
+//Deadlock-free as long as items are started in sequence order (a FIFO executor), since the item the consumer waits
+//for is then always running or done.
+final class ReorderBuffer<T> {
+    private final Object[] slots;
+    private long next; // sequence number take() returns next
+
+    ReorderBuffer(int capacity) {
+        slots = new Object[capacity];
+    }
+
+    synchronized void put(long sequence, T item) throws InterruptedException {
+        while (sequence - next >= slots.length) {
+            wait();
+        }
+        slots[(int) (sequence % slots.length)] = item;
+        notifyAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized T take() throws InterruptedException {
+        int slot = (int) (next % slots.length);
+        while (slots[slot] == null) {
+            wait();
+        }
+        T item = (T) slots[slot];
+        slots[slot] = null;
+        next++;
+        notifyAll();
+        return item;
+    }
+}
@@ -0,0 +1,101 @@
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.KeyGeneratorSpi;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+//JCA KeyGeneratorSpi for the symmetric algorithms of EncryptionProvider. init(keysize) accepts the sizes the
+//algorithm supports (in bits: AES 128, 192 or 256, DESede also 112 for a two-key 3DES key); the first is the default.
+public class SecretKeyGeneratorSpi extends KeyGeneratorSpi {
+    private final String algorithm;
+    private final int[] keySizes; // accepted sizes in bits, the first is the default
+    private SecureRandom random;
+    private int keyBytes;
+
+    SecretKeyGeneratorSpi(String algorithm, int... keySizes) {
+        this.algorithm = algorithm;
+        this.keySizes = keySizes;
+        this.keyBytes = keySizes[0] / 8;
+    }
+
+    public static final class AESKeyGenerator extends SecretKeyGeneratorSpi {
+        public AESKeyGenerator() {
+            super("AES", 8 * AES.KEY_SIZE, 192, 256);
+        }
+    }
+
+    public static final class DESKeyGenerator extends SecretKeyGeneratorSpi {
+        public DESKeyGenerator() {
+            super("DES", 64, 56);
+        }
+    }
+
+    public static final class DESedeKeyGenerator extends SecretKeyGeneratorSpi {
+        public DESedeKeyGenerator() {
+            super("DESede", 192, 168, 128, 112);
+        }
+    }
+
+    public static final class LFSRKeyGenerator extends SecretKeyGeneratorSpi {
+        public LFSRKeyGenerator() {
+            super("LFSR", 64);
+        }
+    }
+
+    @Override
+    protected void engineInit(SecureRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    protected void engineInit(AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidAlgorithmParameterException {
+        throw new InvalidAlgorithmParameterException(algorithm + " key generation takes no parameters");
+    }
+
+    @Override
+    protected void engineInit(int keysize, SecureRandom random) {
+        for (int size : keySizes) {
+            if (size == keysize) {
+                // DES sizes without parity bits (56, 112, 168) still produce whole 8-byte keys
+                keyBytes = (keysize % 64 == 0 ? keysize : keysize / 7 * 8) / 8;
+                this.random = random;
+                return;
+            }
+        }
+        throw new InvalidParameterException("Unsupported " + algorithm + " key size " + keysize);
+    }
+
+    @Override
+    protected SecretKey engineGenerateKey() {
+        if (random == null) {
+            random = new SecureRandom();
+        }
+        byte[] key = new byte[keyBytes];
+        do {
+            random.nextBytes(key);
+            if (algorithm.startsWith("DES")) {
+                setOddParity(key);
+            }
+        } while (algorithm.equals("LFSR") && isZeroRegister(key));
+        return new SecretKeySpec(key, algorithm);
+    }
+
+    private static void setOddParity(byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            int b = key[i] & 0xFE;
+            key[i] = (byte) (b | ((Integer.bitCount(b) & 1) ^ 1));
+        }
+    }
+
+    //LFSRCipherSpi ignores the top bit, so only the low 63 bits have to be nonzero
+    private static boolean isZeroRegister(byte[] key) {
+        int bits = key[0] & 0x7F;
+        for (int i = 1; i < key.length; i++) {
+            bits |= key[i];
+        }
+        return bits == 0;
+    }
+}
@@ -1,6 +1,70 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
 public interface StreamCipher {
     byte[] encrypt(byte[] plaintext);
     byte[] decrypt(byte[] cipherBytes);
     byte[] generateKey(int len);
 
-}
\ No newline at end of file
+    // Encrypts len bytes of in starting at inOff into out starting at outOff, returns the number of bytes written.
+    // The default copies through encrypt(byte[]); implementations should override it to avoid the allocations.
+    default int encrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        byte[] result = encrypt(Arrays.copyOfRange(in, inOff, inOff + len));
+        System.arraycopy(result, 0, out, outOff, len);
+        return len;
+    }
+
+    default int decrypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        byte[] result = decrypt(Arrays.copyOfRange(in, inOff, inOff + len));
+        System.arraycopy(result, 0, out, outOff, len);
+        return len;
+    }
+
+    // Encrypts the remaining bytes of in into out, advancing both positions. Works for heap and direct buffers.
+    default int encrypt(ByteBuffer in, ByteBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        byte[] chunk = new byte[len];
+        in.get(chunk);
+        out.put(encrypt(chunk));
+        return len;
+    }
+
+    default int decrypt(ByteBuffer in, ByteBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        byte[] chunk = new byte[len];
+        in.get(chunk);
+        out.put(decrypt(chunk));
+        return len;
+    }
+
+    // In-place variants: the output overwrites the input
+    default void encryptInPlace(byte[] data, int off, int len) {
+        encrypt(data, off, len, data, off);
+    }
+
+    default void decryptInPlace(byte[] data, int off, int len) {
+        decrypt(data, off, len, data, off);
+    }
+
+    default void encryptInPlace(ByteBuffer buffer) {
+        ByteBuffer out = buffer.duplicate();
+        encrypt(buffer, out);
+    }
+
+    default void decryptInPlace(ByteBuffer buffer) {
+        ByteBuffer out = buffer.duplicate();
+        decrypt(buffer, out);
+    }
+}
@@ -0,0 +1,230 @@
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+//Keystream framing shared by the stream cipher SPIs of EncryptionProvider (AES-CTR, LFSR).
+//update() continues the keystream and doFinal() rewinds it to the start, as JCA requires. Arrays and heap buffers
+//are XORed straight from the caller's input into the caller's output, and direct buffers are read and written in
+//place, so this layer adds no copies.
+abstract class StreamCipherSpi extends CipherSpi {
+    private final String mode;
+    private final int blockSize;
+    private final int ivLength;  // 0 for ciphers without an IV
+    private byte[] iv;
+    private boolean initialized;
+
+    StreamCipherSpi(String mode, int blockSize, int ivLength) {
+        this.mode = mode;
+        this.blockSize = blockSize;
+        this.ivLength = ivLength;
+    }
+
+    // Sets up the keystream for the raw key (and IV, null when ivLength is 0)
+    abstract void start(byte[] key, byte[] iv) throws InvalidKeyException;
+
+    // Back to the first keystream byte
+    abstract void restart();
+
+    abstract void process(byte[] in, int inOff, int len, byte[] out, int outOff);
+
+    abstract void process(ByteBuffer in, ByteBuffer out);
+
+    // Algorithm name for AlgorithmParameters holding the IV
+    abstract String parameterAlgorithm();
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!mode.equalsIgnoreCase(this.mode)) {
+            throw new NoSuchAlgorithmException("Unsupported mode " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (!padding.equalsIgnoreCase("NoPadding")) {
+            throw new NoSuchPaddingException("Unsupported padding " + padding);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        return inputLen;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return iv == null ? null : iv.clone();
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        if (iv == null) {
+            return null;
+        }
+        try {
+            AlgorithmParameters params = AlgorithmParameters.getInstance(parameterAlgorithm());
+            params.init(new IvParameterSpec(iv));
+            return params;
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        byte[] newIv = null;
+        if (ivLength > 0) {
+            if (opmode == Cipher.DECRYPT_MODE || opmode == Cipher.UNWRAP_MODE) {
+                throw new InvalidKeyException("Decryption needs the IV as an IvParameterSpec");
+            }
+            newIv = new byte[ivLength];
+            (random == null ? new SecureRandom() : random).nextBytes(newIv);
+        }
+        init(key, newIv);
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params == null) {
+            engineInit(opmode, key, random);
+            return;
+        }
+        if (ivLength == 0) {
+            throw new InvalidAlgorithmParameterException("No parameters expected");
+        }
+        if (!(params instanceof IvParameterSpec) || ((IvParameterSpec) params).getIV().length != ivLength) {
+            throw new InvalidAlgorithmParameterException("Expected a " + ivLength + "-byte IvParameterSpec");
+        }
+        init(key, ((IvParameterSpec) params).getIV());
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        try {
+            engineInit(opmode, key, params == null ? null : params.getParameterSpec(IvParameterSpec.class), random);
+        } catch (InvalidParameterSpecException e) {
+            throw new InvalidAlgorithmParameterException(e);
+        }
+    }
+
+    private void init(Key key, byte[] newIv) throws InvalidKeyException {
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            throw new InvalidKeyException("Key has no raw encoding");
+        }
+        try {
+            start(encoded, newIv);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+        iv = newIv;
+        initialized = true;
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] out = new byte[inputLen];
+        update(input, inputOffset, inputLen, out, 0);
+        return out;
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        if (output.length - outputOffset < inputLen) {
+            throw new ShortBufferException("Output buffer needs " + inputLen + " bytes");
+        }
+        update(input, inputOffset, inputLen, output, outputOffset);
+        return inputLen;
+    }
+
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        checkInitialized();
+        int len = input.remaining();
+        if (output.remaining() < len) {
+            throw new ShortBufferException("Output buffer needs " + len + " bytes");
+        }
+        process(input, output);
+        return len;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen) {
+        byte[] out = input == null ? new byte[0] : engineUpdate(input, inputOffset, inputLen);
+        restart();
+        return out;
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        int n = input == null ? 0 : engineUpdate(input, inputOffset, inputLen, output, outputOffset);
+        restart();
+        return n;
+    }
+
+    @Override
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        int n = engineUpdate(input, output);
+        restart();
+        return n;
+    }
+
+    @Override
+    protected byte[] engineWrap(Key key) throws InvalidKeyException {
+        byte[] encoded = KeyWrapping.encode(key);
+        try {
+            return engineDoFinal(encoded, 0, encoded.length);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    @Override
+    protected Key engineUnwrap(byte[] wrappedKey, String wrappedKeyAlgorithm, int wrappedKeyType)
+            throws InvalidKeyException, NoSuchAlgorithmException {
+        byte[] encoded = engineDoFinal(wrappedKey, 0, wrappedKey.length);
+        try {
+            return KeyWrapping.decode(encoded, wrappedKeyAlgorithm, wrappedKeyType);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    private void update(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+        checkInitialized();
+        if (input == output && outputOffset > inputOffset && outputOffset < inputOffset + inputLen) {
+            // overlapping in-place call with the output ahead of the input
+            input = Arrays.copyOfRange(input, inputOffset, inputOffset + inputLen);
+            inputOffset = 0;
+        }
+        process(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    private void checkInitialized() {
+        if (!initialized) {
+            throw new IllegalStateException("Cipher not initialized");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+//AES block encryption/decryption over a message of `size` bytes (ECB, one call per 16-byte block) and key expansion
+//for 128, 192 and 256-bit keys, with the JCE AES/ECB/NoPadding cipher as the baseline. The repository's AES does not produce FIPS-197 output,
+//so the baseline compares cost, not results.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AESBenchmark {
+    @Param({"16", "1024", "16384"})
+    public int size;
+
+    @Param({"16", "24", "32"})
+    public int keyLength;
+
+    private byte[] key;
+    private byte[][] subKeys;
+    private byte[][] blocks;
+    private byte[][] cipherBlocks;
+    private byte[] message;
+    private byte[] output;
+    private SecretKeySpec keySpec;
+    private Cipher jceEncrypt;
+    private Cipher jceDecrypt;
+    private byte[] jceCipherText;
+
+    @Setup
+    public void setup() throws Throwable {
+        Random random = new Random(42);
+        key = new byte[keyLength];
+        random.nextBytes(key);
+        message = new byte[size];
+        random.nextBytes(message);
+        output = new byte[size];
+
+        subKeys = (byte[][]) Engines.AES_SUB_KEYS.invokeExact(key);
+        blocks = new byte[size / 16][16];
+        cipherBlocks = new byte[blocks.length][];
+        for (int i = 0; i < blocks.length; i++) {
+            System.arraycopy(message, 16 * i, blocks[i], 0, 16);
+            cipherBlocks[i] = (byte[]) Engines.AES_ENCRYPT.invokeExact(blocks[i], subKeys);
+        }
+
+        keySpec = new SecretKeySpec(key, "AES");
+        jceEncrypt = Cipher.getInstance("AES/ECB/NoPadding");
+        jceEncrypt.init(Cipher.ENCRYPT_MODE, keySpec);
+        jceDecrypt = Cipher.getInstance("AES/ECB/NoPadding");
+        jceDecrypt.init(Cipher.DECRYPT_MODE, keySpec);
+        jceCipherText = jceEncrypt.doFinal(message);
+    }
+
+    @Benchmark
+    public void encrypt(Blackhole bh) throws Throwable {
+        for (byte[] block : blocks) {
+            bh.consume((byte[]) Engines.AES_ENCRYPT.invokeExact(block, subKeys));
+        }
+    }
+
+    // The whole message block by block into a reused output array, without allocating
+    @Benchmark
+    public byte[] encryptInto() throws Throwable {
+        for (int i = 0; i < size; i += 16) {
+            Engines.AES_ENCRYPT_BLOCK.invokeExact(message, i, output, i, subKeys);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public void decrypt(Blackhole bh) throws Throwable {
+        for (byte[] block : cipherBlocks) {
+            bh.consume((byte[]) Engines.AES_DECRYPT.invokeExact(block, subKeys));
+        }
+    }
+
+    // Served from the shared key-schedule cache after the first call
+    @Benchmark
+    public byte[][] keyExpansion() throws Throwable {
+        return (byte[][]) Engines.AES_SUB_KEYS.invokeExact(key);
+    }
+
+    @Benchmark
+    public byte[][] keyExpansionUncached() throws Throwable {
+        return (byte[][]) Engines.AES_EXPAND_KEY.invokeExact(key);
+    }
+
+    // A fresh key for one block: a schedule built without the cache and one block, or round keys on the fly
+    @Benchmark
+    public byte[] singleUseKeyExpanded() throws Throwable {
+        key[0]++;
+        byte[][] schedule = (byte[][]) Engines.AES_EXPAND_KEY.invokeExact(key);
+        Engines.AES_ENCRYPT_BLOCK.invokeExact(message, 0, output, 0, schedule);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] singleUseKeyOnTheFly() throws Throwable {
+        key[0]++;
+        Engines.AES_ENCRYPT_BLOCK_ONCE.invokeExact(key, message, 0, output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] jceEncrypt() throws Exception {
+        return jceEncrypt.doFinal(message);
+    }
+
+    @Benchmark
+    public byte[] jceDecrypt() throws Exception {
+        return jceDecrypt.doFinal(jceCipherText);
+    }
+
+    @Benchmark
+    public Cipher jceKeyExpansion() throws Exception {
+        jceEncrypt.init(Cipher.ENCRYPT_MODE, keySpec);
+        return jceEncrypt;
+    }
+}
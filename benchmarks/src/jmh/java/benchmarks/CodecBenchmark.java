@@ -0,0 +1,77 @@
+package benchmarks;
+
+import codec.TextCodec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//Hex and binary text formatting of cipher text by size: the table-driven TextCodec against the per-byte
+//String.format formatting it replaced (kept here as the baseline).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CodecBenchmark {
+    @Param({"16", "1024"})
+    public int size;
+
+    private byte[] data;
+    private String hex;
+    private String bits;
+    private byte[] decoded;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        hex = TextCodec.toHex(data);
+        bits = TextCodec.toBinary(data);
+        decoded = new byte[size];
+    }
+
+    @Benchmark
+    public String hex() {
+        return TextCodec.toHex(data);
+    }
+
+    @Benchmark
+    public String hexFormat() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public byte[] hexDecode() {
+        TextCodec.decodeHex(hex, 0, hex.length(), decoded, 0);
+        return decoded;
+    }
+
+    @Benchmark
+    public String binary() {
+        return TextCodec.toBinary(data);
+    }
+
+    @Benchmark
+    public String binaryFormat() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%8s", Integer.toBinaryString(b & 0xFF)).replace(' ', '0'));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public byte[] binaryDecode() {
+        TextCodec.decodeBinary(bits, 0, bits.length(), decoded, 0);
+        return decoded;
+    }
+}
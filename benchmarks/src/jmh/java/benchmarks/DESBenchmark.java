@@ -0,0 +1,115 @@
+package benchmarks;
+
+import desimplementation.Encryption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+//DES block encryption/decryption over a message of `size` bytes and the 16-round key schedule, using the
+//binary-string implementation in desimplementation.Encryption, with JCE DES/ECB/NoPadding as the baseline.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DESBenchmark {
+    @Param({"8", "64", "1024"})
+    public int size;
+
+    private Encryption des;
+    private String binaryKey;
+    private String[] roundKeys;
+    private String[] blocks;
+    private String[] cipherBlocks;
+    private byte[] key;
+    private byte[] message;
+    private SecretKeySpec keySpec;
+    private Cipher jceEncrypt;
+    private Cipher jceDecrypt;
+    private byte[] jceCipherText;
+
+    @Setup
+    public void setup() throws Exception {
+        Random random = new Random(42);
+        key = new byte[8];
+        random.nextBytes(key);
+        message = new byte[size];
+        random.nextBytes(message);
+
+        des = new Encryption();
+        binaryKey = bits(key, 0, 8);
+        roundKeys = des.generateRoundKeys(binaryKey);
+        blocks = new String[size / 8];
+        cipherBlocks = new String[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = bits(message, 8 * i, 8);
+            cipherBlocks[i] = des.encryptBlock(blocks[i], roundKeys);
+        }
+
+        keySpec = new SecretKeySpec(key, "DES");
+        jceEncrypt = Cipher.getInstance("DES/ECB/NoPadding");
+        jceEncrypt.init(Cipher.ENCRYPT_MODE, keySpec);
+        jceDecrypt = Cipher.getInstance("DES/ECB/NoPadding");
+        jceDecrypt.init(Cipher.DECRYPT_MODE, keySpec);
+        jceCipherText = jceEncrypt.doFinal(message);
+    }
+
+    private static String bits(byte[] data, int from, int len) {
+        StringBuilder sb = new StringBuilder(8 * len);
+        for (int i = from; i < from + len; i++) {
+            for (int b = 7; b >= 0; b--) {
+                sb.append((data[i] >> b) & 1);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public void encrypt(Blackhole bh) {
+        for (String block : blocks) {
+            bh.consume(des.encryptBlock(block, roundKeys));
+        }
+    }
+
+    @Benchmark
+    public void decrypt(Blackhole bh) {
+        for (String block : cipherBlocks) {
+            bh.consume(des.decryptBlock(block, roundKeys));
+        }
+    }
+
+    // Served from the shared key-schedule cache after the first call
+    @Benchmark
+    public String[] keySchedule() {
+        return des.generateRoundKeys(binaryKey);
+    }
+
+    @Benchmark
+    public String[] keyScheduleUncached() throws Throwable {
+        return (String[]) Engines.DES_DERIVE_ROUND_KEYS.invokeExact(des, binaryKey);
+    }
+
+    @Benchmark
+    public byte[] jceEncrypt() throws Exception {
+        return jceEncrypt.doFinal(message);
+    }
+
+    @Benchmark
+    public byte[] jceDecrypt() throws Exception {
+        return jceDecrypt.doFinal(jceCipherText);
+    }
+
+    @Benchmark
+    public Cipher jceKeySchedule() throws Exception {
+        jceEncrypt.init(Cipher.ENCRYPT_MODE, keySpec);
+        return jceEncrypt;
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import desimplementation.Encryption;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+
+//Handles into the algorithm classes, including the private uncached key expansions. AES, LFSR and RSA live in
+//the default package, which cannot be imported from a named package (and JMH refuses benchmarks in the default
+//package), so they are reached through MethodHandles. Package-private types are erased to Object; static final
+//handles are constant-folded by the JIT, so a call costs the same as a direct one.
+final class Engines {
+    // AES: byte[][] generateSubKeys(byte[] key) (cached), byte[][] expandKey(byte[] key) (uncached),
+    // byte[] encrypt/decrypt(byte[] block, byte[][] subKeys),
+    // void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, byte[][] subKeys) (no allocation),
+    // void encryptBlockOnce(byte[] key, byte[] in, int inOff, byte[] out, int outOff) (round keys on the fly)
+    static final MethodHandle AES_SUB_KEYS;
+    static final MethodHandle AES_EXPAND_KEY;
+    static final MethodHandle AES_ENCRYPT;
+    static final MethodHandle AES_DECRYPT;
+    static final MethodHandle AES_ENCRYPT_BLOCK;
+    static final MethodHandle AES_ENCRYPT_BLOCK_ONCE;
+
+    // DES: String[] deriveRoundKeys(Encryption des, String binaryKey), the key schedule without the cache
+    static final MethodHandle DES_DERIVE_ROUND_KEYS;
+
+    // LFSR: Object new LFSR(long register, int[] polynom), int encrypt(Object lfsr, in, inOff, len, out, outOff)
+    static final MethodHandle LFSR_NEW;
+    static final MethodHandle LFSR_ENCRYPT;
+
+    // RSA: Object generateRSAKeys(int bits), byte[] encrypt/decrypt(Object keyPair, byte[]),
+    // BigInteger decryptWithCRT(BigInteger, Object keyPair), BigInteger getN(Object keyPair)
+    static final MethodHandle RSA_GENERATE;
+    static final MethodHandle RSA_ENCRYPT;
+    static final MethodHandle RSA_DECRYPT;
+    static final MethodHandle RSA_DECRYPT_CRT;
+    static final MethodHandle RSA_MODULUS;
+
+    static {
+        try {
+            Class<?> aes = Class.forName("AES");
+            MethodHandles.Lookup aesLookup = MethodHandles.privateLookupIn(aes, MethodHandles.lookup());
+            AES_SUB_KEYS = aesLookup.findStatic(aes, "generateSubKeys",
+                    MethodType.methodType(byte[][].class, byte[].class));
+            AES_EXPAND_KEY = aesLookup.findStatic(aes, "expandKey",
+                    MethodType.methodType(byte[][].class, byte[].class));
+            AES_ENCRYPT = aesLookup.findStatic(aes, "encrypt",
+                    MethodType.methodType(byte[].class, byte[].class, byte[][].class));
+            AES_DECRYPT = aesLookup.findStatic(aes, "decrypt",
+                    MethodType.methodType(byte[].class, byte[].class, byte[][].class));
+            AES_ENCRYPT_BLOCK = aesLookup.findStatic(aes, "encryptBlock", MethodType.methodType(void.class,
+                    byte[].class, int.class, byte[].class, int.class, byte[][].class));
+            AES_ENCRYPT_BLOCK_ONCE = aesLookup.findStatic(aes, "encryptBlockOnce", MethodType.methodType(void.class,
+                    byte[].class, byte[].class, int.class, byte[].class, int.class));
+
+            DES_DERIVE_ROUND_KEYS = MethodHandles.privateLookupIn(Encryption.class, MethodHandles.lookup())
+                    .findVirtual(Encryption.class, "deriveRoundKeys", MethodType.methodType(String[].class, String.class));
+
+            Class<?> lfsr = Class.forName("LFSR");
+            MethodHandles.Lookup lfsrLookup = MethodHandles.privateLookupIn(lfsr, MethodHandles.lookup());
+            LFSR_NEW = lfsrLookup.findConstructor(lfsr, MethodType.methodType(void.class, long.class, int[].class))
+                    .asType(MethodType.methodType(Object.class, long.class, int[].class));
+            LFSR_ENCRYPT = lfsrLookup.findVirtual(lfsr, "encrypt",
+                    MethodType.methodType(int.class, byte[].class, int.class, int.class, byte[].class, int.class))
+                    .asType(MethodType.methodType(int.class, Object.class,
+                            byte[].class, int.class, int.class, byte[].class, int.class));
+
+            Class<?> rsa = Class.forName("RSA");
+            Class<?> keyPair = Class.forName("RSAKeyPair");
+            MethodHandles.Lookup rsaLookup = MethodHandles.privateLookupIn(rsa, MethodHandles.lookup());
+            RSA_GENERATE = rsaLookup.findStatic(rsa, "generateRSAKeys", MethodType.methodType(keyPair, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+            RSA_ENCRYPT = rsaLookup.findStatic(rsa, "encrypt",
+                    MethodType.methodType(byte[].class, keyPair, byte[].class))
+                    .asType(MethodType.methodType(byte[].class, Object.class, byte[].class));
+            RSA_DECRYPT = rsaLookup.findStatic(rsa, "decrypt",
+                    MethodType.methodType(byte[].class, keyPair, byte[].class))
+                    .asType(MethodType.methodType(byte[].class, Object.class, byte[].class));
+            RSA_DECRYPT_CRT = rsaLookup.findStatic(rsa, "decryptWithCRT",
+                    MethodType.methodType(BigInteger.class, BigInteger.class, keyPair))
+                    .asType(MethodType.methodType(BigInteger.class, BigInteger.class, Object.class));
+            RSA_MODULUS = rsaLookup.findVirtual(keyPair, "getN", MethodType.methodType(BigInteger.class))
+                    .asType(MethodType.methodType(BigInteger.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Engines() {
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//LFSR keystream encryption by register degree, reported both as operations and as bytes per second.
+//Each degree uses a primitive trinomial or pentanomial so the register runs through its full period.
+//There is no JCE equivalent of a bare LFSR.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LFSRBenchmark {
+    @Param({"8", "16", "24", "32", "48", "63"})
+    public int degree;
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private Object lfsr;
+    private byte[] in;
+    private byte[] out;
+
+    // Per-thread byte counter; JMH reports it as a rate next to the primary score
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws Throwable {
+        long register = 0x5DEECE66DL & ((1L << degree) - 1);
+        lfsr = (Object) Engines.LFSR_NEW.invokeExact(register, taps(degree));
+        in = new byte[size];
+        new Random(42).nextBytes(in);
+        out = new byte[size];
+    }
+
+    private static int[] taps(int degree) {
+        switch (degree) {
+            case 8: return new int[]{8, 6, 5, 4};
+            case 16: return new int[]{16, 15, 13, 4};
+            case 24: return new int[]{24, 23, 22, 17};
+            case 32: return new int[]{32, 22, 2, 1};
+            case 48: return new int[]{48, 47, 21, 20};
+            case 63: return new int[]{63, 62};
+            default: throw new IllegalArgumentException("No taps for degree " + degree);
+        }
+    }
+
+    @Benchmark
+    public byte[] keystream(Bytes counter) throws Throwable {
+        int n = (int) Engines.LFSR_ENCRYPT.invokeExact(lfsr, in, 0, size, out, 0);
+        counter.bytes += n;
+        return out;
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//RSA by modulus size: OAEP encryption of one 32-byte block (public key), OAEP decryption and raw CRT decryption
+//(private key), and key generation. The JCE baselines use RSA/ECB/OAEPPadding with SHA-256 and MGF1-SHA-256,
+//the same padding as RSA.encrypt.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RSABenchmark {
+    private static final OAEPParameterSpec OAEP = new OAEPParameterSpec(
+            "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
+    @Param({"1024", "2048", "3072"})
+    public int bits;
+
+    private Object keyPair;
+    private byte[] message;
+    private byte[] cipherText;
+    private BigInteger cipherValue;
+    private KeyPairGenerator jceGenerator;
+    private Cipher jceEncrypt;
+    private Cipher jceDecrypt;
+    private byte[] jceCipherText;
+
+    @Setup
+    public void setup() throws Throwable {
+        Random random = new Random(42);
+        message = new byte[32];
+        random.nextBytes(message);
+        keyPair = (Object) Engines.RSA_GENERATE.invokeExact(bits);
+        cipherText = (byte[]) Engines.RSA_ENCRYPT.invokeExact(keyPair, message);
+        BigInteger n = (BigInteger) Engines.RSA_MODULUS.invokeExact(keyPair);
+        cipherValue = new BigInteger(bits - 1, random).mod(n);
+
+        jceGenerator = KeyPairGenerator.getInstance("RSA");
+        jceGenerator.initialize(bits);
+        KeyPair jceKeys = jceGenerator.generateKeyPair();
+        jceEncrypt = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        jceEncrypt.init(Cipher.ENCRYPT_MODE, jceKeys.getPublic(), OAEP);
+        jceDecrypt = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        jceDecrypt.init(Cipher.DECRYPT_MODE, jceKeys.getPrivate(), OAEP);
+        jceCipherText = jceEncrypt.doFinal(message);
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Throwable {
+        return (byte[]) Engines.RSA_ENCRYPT.invokeExact(keyPair, message);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws Throwable {
+        return (byte[]) Engines.RSA_DECRYPT.invokeExact(keyPair, cipherText);
+    }
+
+    @Benchmark
+    public BigInteger decryptCRT() throws Throwable {
+        return (BigInteger) Engines.RSA_DECRYPT_CRT.invokeExact(cipherValue, keyPair);
+    }
+
+    // Key generation takes milliseconds and varies with the primes found
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object keygen() throws Throwable {
+        return (Object) Engines.RSA_GENERATE.invokeExact(bits);
+    }
+
+    @Benchmark
+    public byte[] jceEncrypt() throws Exception {
+        return jceEncrypt.doFinal(message);
+    }
+
+    @Benchmark
+    public byte[] jceDecrypt() throws Exception {
+        return jceDecrypt.doFinal(jceCipherText);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public KeyPair jceKeygen() {
+        return jceGenerator.generateKeyPair();
+    }
+}
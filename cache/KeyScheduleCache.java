@@ -0,0 +1,402 @@
+package cache;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+//Bounded cache of expanded key schedules shared by the block ciphers (AES sub keys, DES round keys).
+//
+//Entries are keyed by a salted SHA-256 of the algorithm name and key material, so raw keys are never stored,
+//and the four 32-bit words of the digest double as the hash functions of the frequency sketch.
+//Eviction follows W-TinyLFU: new entries go into a small LRU window; when the window overflows its oldest entry
+//competes with the oldest entry of the main segment's probation queue and the one with the lower estimated
+//access frequency is evicted. Entries hit again in probation are promoted to the protected queue (segmented LRU),
+//so a burst of one-off keys cannot flush the keys that recur.
+//
+//Lookups go through a ConcurrentHashMap without locking. Reordering the queues and counting frequencies needs
+//the policy lock; a hit that finds it busy skips that step, the way a lossy read buffer would.
+//Callers always receive their own copy of a schedule. The cached copy is zeroed when it is evicted or cleared.
+public final class KeyScheduleCache {
+    private static final KeyScheduleCache SHARED =
+            new KeyScheduleCache(Integer.getInteger("keyschedule.cache.size", 4096));
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final ConcurrentHashMap<Digest, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final Deque[] queues = {new Deque(), new Deque(), new Deque()};
+    private final FrequencySketch sketch;
+    private final byte[] salt = new byte[16];
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(KeyScheduleCache::newDigest);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // maximumSize 0 disables caching: every lookup expands the key
+    public KeyScheduleCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * 4 / 5;
+        this.sketch = new FrequencySketch(Math.max(1, maximumSize));
+        new SecureRandom().nextBytes(salt);
+    }
+
+    // The process-wide cache used by AES and DES, sized by -Dkeyschedule.cache.size (default 4096 schedules)
+    public static KeyScheduleCache shared() {
+        return SHARED;
+    }
+
+    // A copy of the cached schedule for this key, expanding and caching it on a miss
+    public byte[][] get(String algorithm, byte[] key, Function<byte[], byte[][]> expand) {
+        if (maximumSize == 0) {
+            misses.increment();
+            return expand.apply(key);
+        }
+        Digest digest = digest(algorithm, key);
+        Node node = data.get(digest);
+        if (node != null) {
+            byte[][] copy = node.copy();
+            if (copy != null) {
+                hits.increment();
+                if (policyLock.tryLock()) {
+                    try {
+                        sketch.increment(digest);
+                        onHit(node);
+                    } finally {
+                        policyLock.unlock();
+                    }
+                }
+                return copy;
+            }
+        }
+        misses.increment();
+        byte[][] schedule = expand.apply(key);
+        Node added = new Node(digest, deepCopy(schedule));
+        policyLock.lock();
+        try {
+            sketch.increment(digest);
+            if (data.putIfAbsent(digest, added) == null) {
+                queues[WINDOW].addLast(added);
+                evict();
+            } else {
+                added.zero(); // another thread cached it first
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        return schedule;
+    }
+
+    // Drops and zeroes every entry
+    public void clear() {
+        policyLock.lock();
+        try {
+            for (Deque queue : queues) {
+                for (Node node = queue.first(); node != null; node = queue.first()) {
+                    queue.remove(node);
+                    data.remove(node.digest, node);
+                    node.zero();
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), data.size());
+    }
+
+    //segmented LRU on a hit: window and protected entries move to the back, probation entries are promoted
+    private void onHit(Node node) {
+        if (data.get(node.digest) != node) {
+            return; // evicted while the caller was copying it
+        }
+        if (node.queue == PROBATION) {
+            queues[PROBATION].remove(node);
+            node.queue = PROTECTED;
+            queues[PROTECTED].addLast(node);
+            while (queues[PROTECTED].size > protectedMaximum) {
+                Node demoted = queues[PROTECTED].first();
+                queues[PROTECTED].remove(demoted);
+                demoted.queue = PROBATION;
+                queues[PROBATION].addLast(demoted);
+            }
+        } else {
+            queues[node.queue].moveToBack(node);
+        }
+    }
+
+    //moves window overflow to the back of probation; while the cache is over size, the oldest of those candidates
+    //and the oldest probation entry compete and the one with the lower frequency is evicted
+    private void evict() {
+        Node candidate = null;
+        while (queues[WINDOW].size > windowMaximum) {
+            Node node = queues[WINDOW].first();
+            queues[WINDOW].remove(node);
+            node.queue = PROBATION;
+            queues[PROBATION].addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        while (data.size() > maximumSize) {
+            Node victim = queues[PROBATION].first();
+            if (victim == null) {
+                victim = queues[PROTECTED].first();
+            }
+            if (victim == null) {
+                victim = queues[WINDOW].first();
+            }
+            if (candidate == null || candidate == victim) {
+                if (candidate == victim) {
+                    candidate = candidate.next;
+                }
+                remove(victim);
+            } else if (sketch.frequency(candidate.digest) > sketch.frequency(victim.digest)) {
+                remove(victim);
+            } else {
+                Node next = candidate.next;
+                remove(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    private void remove(Node node) {
+        queues[node.queue].remove(node);
+        data.remove(node.digest, node);
+        node.zero();
+        evictions.increment();
+    }
+
+    private Digest digest(String algorithm, byte[] key) {
+        MessageDigest md = sha256.get();
+        md.update(salt);
+        for (int i = 0; i < algorithm.length(); i++) {
+            md.update((byte) algorithm.charAt(i));
+        }
+        md.update((byte) 0);
+        md.update(key);
+        return new Digest(md.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[][] deepCopy(byte[][] schedule) {
+        byte[][] copy = new byte[schedule.length][];
+        for (int i = 0; i < schedule.length; i++) {
+            copy[i] = schedule[i].clone();
+        }
+        return copy;
+    }
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d evictions=%d size=%d hitRate=%.3f",
+                    hits, misses, evictions, size, getHitRate());
+        }
+    }
+
+    //salted SHA-256 of the key; its words are used as hash codes
+    private static final class Digest {
+        private final int[] words = new int[8];
+
+        Digest(byte[] bytes) {
+            for (int i = 0; i < 32; i++) {
+                words[i >>> 2] = (words[i >>> 2] << 8) | (bytes[i] & 0xFF);
+            }
+        }
+
+        int word(int i) {
+            return words[i];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Digest && Arrays.equals(words, ((Digest) o).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return words[0];
+        }
+    }
+
+    private static final class Node {
+        final Digest digest;
+        byte[][] value; // guarded by this node's monitor
+        int queue = WINDOW;
+        Node prev;
+        Node next;
+
+        Node(Digest digest, byte[][] value) {
+            this.digest = digest;
+            this.value = value;
+        }
+
+        synchronized byte[][] copy() {
+            return value == null ? null : deepCopy(value);
+        }
+
+        synchronized void zero() {
+            if (value != null) {
+                for (byte[] roundKey : value) {
+                    Arrays.fill(roundKey, (byte) 0);
+                }
+                value = null;
+            }
+        }
+    }
+
+    //intrusive doubly linked LRU queue, oldest first
+    private static final class Deque {
+        private Node head;
+        private Node tail;
+        private int size;
+
+        Node first() {
+            return head;
+        }
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToBack(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    //count-min sketch of 4-bit counters (4 rows, one per digest word); all counters are halved after
+    //10 * width increments so old popularity fades
+    private static final class FrequencySketch {
+        private final byte[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize - 1) << 1);
+            rows = new byte[4][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        void increment(Digest digest) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = digest.word(i) & mask;
+                if (rows[i][index] < 15) {
+                    rows[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (byte[] row : rows) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Digest digest) {
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, rows[i][digest.word(i) & mask]);
+            }
+            return frequency;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package codec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+//Hex and binary text for byte data, driven by 256-entry lookup tables: encoding a byte is one table copy of two
+//(hex) or eight (binary) characters instead of Integer.toHexString / String.format per byte.
+//Encoders append to a StringBuilder or any Appendable, or write ASCII into a ByteBuffer; decoders read a
+//CharSequence range or ASCII ByteBuffer straight into a byte array or buffer without creating Strings in between.
+//Hex output is lower case; decoding accepts either case.
+public final class TextCodec {
+    private static final char[] HEX = new char[256 * 2];
+    private static final char[] BINARY = new char[256 * 8];
+    private static final byte[] HEX_ASCII = new byte[256 * 2];
+    private static final byte[] BINARY_ASCII = new byte[256 * 8];
+    private static final byte[] HEX_VALUES = new byte[128]; // -1 for characters that are not hex digits
+    private static final int CHUNK = 512; // bytes encoded per Appendable call
+
+    static {
+        String digits = "0123456789abcdef";
+        for (int b = 0; b < 256; b++) {
+            HEX[2 * b] = digits.charAt(b >>> 4);
+            HEX[2 * b + 1] = digits.charAt(b & 0xF);
+            for (int i = 0; i < 8; i++) {
+                BINARY[8 * b + i] = (char) ('0' + ((b >>> (7 - i)) & 1));
+            }
+        }
+        for (int i = 0; i < HEX.length; i++) {
+            HEX_ASCII[i] = (byte) HEX[i];
+        }
+        for (int i = 0; i < BINARY.length; i++) {
+            BINARY_ASCII[i] = (byte) BINARY[i];
+        }
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[digits.charAt(i)] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(digits.charAt(i))] = (byte) i;
+        }
+    }
+
+    private TextCodec() {
+    }
+
+    // ---- hex ----
+
+    public static String toHex(byte[] data) {
+        return toHex(data, 0, data.length);
+    }
+
+    public static String toHex(byte[] data, int off, int len) {
+        Objects.checkFromIndexSize(off, len, data.length);
+        char[] chars = new char[2 * len];
+        for (int i = 0; i < len; i++) {
+            int b = (data[off + i] & 0xFF) << 1;
+            chars[2 * i] = HEX[b];
+            chars[2 * i + 1] = HEX[b + 1];
+        }
+        return new String(chars);
+    }
+
+    public static StringBuilder appendHex(StringBuilder out, byte[] data, int off, int len) {
+        Objects.checkFromIndexSize(off, len, data.length);
+        out.ensureCapacity(out.length() + 2 * len);
+        for (int i = off; i < off + len; i++) {
+            int b = (data[i] & 0xFF) << 1;
+            out.append(HEX, b, 2);
+        }
+        return out;
+    }
+
+    public static <A extends Appendable> A appendHex(A out, byte[] data, int off, int len) throws IOException {
+        return append(out, HEX, 2, data, off, len, -1);
+    }
+
+    // Writes two ASCII hex digits per remaining byte of in to out, advancing both
+    public static void encodeHex(ByteBuffer in, ByteBuffer out) {
+        encode(in, out, HEX_ASCII, 2);
+    }
+
+    public static byte[] fromHex(CharSequence hex) {
+        byte[] out = new byte[hex.length() / 2];
+        decodeHex(hex, 0, hex.length(), out, 0);
+        return out;
+    }
+
+    // Decodes hex[from .. to) into out at outOff; returns the number of bytes written
+    public static int decodeHex(CharSequence hex, int from, int to, byte[] out, int outOff) {
+        Objects.checkFromToIndex(from, to, hex.length());
+        if (((to - from) & 1) != 0) {
+            throw new IllegalArgumentException("Hex text must have an even number of digits");
+        }
+        int len = (to - from) / 2;
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        for (int i = 0; i < len; i++) {
+            out[outOff + i] = (byte) (hexValue(hex.charAt(from + 2 * i)) << 4 | hexValue(hex.charAt(from + 2 * i + 1)));
+        }
+        return len;
+    }
+
+    // Decodes the remaining ASCII hex digits of in into out, advancing both
+    public static void decodeHex(ByteBuffer in, ByteBuffer out) {
+        if ((in.remaining() & 1) != 0) {
+            throw new IllegalArgumentException("Hex text must have an even number of digits");
+        }
+        if (out.remaining() < in.remaining() / 2) {
+            throw new BufferOverflowException();
+        }
+        while (in.hasRemaining()) {
+            int high = hexValue((char) (in.get() & 0xFF));
+            out.put((byte) (high << 4 | hexValue((char) (in.get() & 0xFF))));
+        }
+    }
+
+    // ---- binary ----
+
+    public static String toBinary(byte[] data) {
+        return toBinary(data, 0, data.length);
+    }
+
+    // Eight '0' / '1' characters per byte, most significant bit first
+    public static String toBinary(byte[] data, int off, int len) {
+        Objects.checkFromIndexSize(off, len, data.length);
+        char[] chars = new char[8 * len];
+        for (int i = 0; i < len; i++) {
+            System.arraycopy(BINARY, (data[off + i] & 0xFF) << 3, chars, 8 * i, 8);
+        }
+        return new String(chars);
+    }
+
+    public static StringBuilder appendBinary(StringBuilder out, byte[] data, int off, int len) {
+        Objects.checkFromIndexSize(off, len, data.length);
+        out.ensureCapacity(out.length() + 8 * len);
+        for (int i = off; i < off + len; i++) {
+            out.append(BINARY, (data[i] & 0xFF) << 3, 8);
+        }
+        return out;
+    }
+
+    // As above with separator after every byte
+    public static StringBuilder appendBinary(StringBuilder out, byte[] data, int off, int len, char separator) {
+        Objects.checkFromIndexSize(off, len, data.length);
+        out.ensureCapacity(out.length() + 9 * len);
+        for (int i = off; i < off + len; i++) {
+            out.append(BINARY, (data[i] & 0xFF) << 3, 8).append(separator);
+        }
+        return out;
+    }
+
+    public static <A extends Appendable> A appendBinary(A out, byte[] data, int off, int len) throws IOException {
+        return append(out, BINARY, 8, data, off, len, -1);
+    }
+
+    public static <A extends Appendable> A appendBinary(A out, byte[] data, int off, int len, char separator)
+            throws IOException {
+        return append(out, BINARY, 8, data, off, len, separator);
+    }
+
+    // Writes eight ASCII '0' / '1' per remaining byte of in to out, advancing both
+    public static void encodeBinary(ByteBuffer in, ByteBuffer out) {
+        encode(in, out, BINARY_ASCII, 8);
+    }
+
+    public static byte[] fromBinary(CharSequence bits) {
+        byte[] out = new byte[(bits.length() + 7) / 8];
+        decodeBinary(bits, 0, bits.length(), out, 0);
+        return out;
+    }
+
+    // Decodes bits[from .. to), eight characters per byte, into out at outOff and returns the number of bytes
+    // written. A shorter final group is read as a number, like Integer.parseInt(group, 2).
+    public static int decodeBinary(CharSequence bits, int from, int to, byte[] out, int outOff) {
+        Objects.checkFromToIndex(from, to, bits.length());
+        int len = (to - from + 7) / 8;
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        for (int i = 0; i < len; i++) {
+            int value = 0;
+            int invalid = 0;
+            for (int j = from + 8 * i, end = Math.min(to, j + 8); j < end; j++) {
+                int bit = bits.charAt(j) - '0';
+                invalid |= bit;
+                value = (value << 1) | bit;
+            }
+            if ((invalid & ~1) != 0) {
+                throw new IllegalArgumentException("Binary text may only contain '0' and '1'");
+            }
+            out[outOff + i] = (byte) value;
+        }
+        return len;
+    }
+
+    // Decodes the remaining ASCII '0' / '1' of in (a multiple of eight) into out, advancing both
+    public static void decodeBinary(ByteBuffer in, ByteBuffer out) {
+        if ((in.remaining() & 7) != 0) {
+            throw new IllegalArgumentException("Binary text must be a whole number of bytes");
+        }
+        if (out.remaining() < in.remaining() / 8) {
+            throw new BufferOverflowException();
+        }
+        while (in.hasRemaining()) {
+            int value = 0;
+            int invalid = 0;
+            for (int j = 0; j < 8; j++) {
+                int bit = in.get() - '0';
+                invalid |= bit;
+                value = (value << 1) | bit;
+            }
+            if ((invalid & ~1) != 0) {
+                throw new IllegalArgumentException("Binary text may only contain '0' and '1'");
+            }
+            out.put((byte) value);
+        }
+    }
+
+    //table encoding in chunks through a char buffer, so the Appendable sees a few large appends; separator -1 for none
+    private static <A extends Appendable> A append(A out, char[] table, int width, byte[] data, int off, int len,
+                                                    int separator) throws IOException {
+        Objects.checkFromIndexSize(off, len, data.length);
+        int step = separator < 0 ? width : width + 1;
+        char[] chars = new char[Math.min(len, CHUNK) * step];
+        for (int done = 0; done < len; ) {
+            int n = Math.min(len - done, CHUNK);
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(table, (data[off + done + i] & 0xFF) * width, chars, i * step, width);
+                if (step != width) {
+                    chars[i * step + width] = (char) separator;
+                }
+            }
+            if (out instanceof Writer) {
+                ((Writer) out).write(chars, 0, n * step);
+            } else if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(chars, 0, n * step);
+            } else {
+                out.append(CharBuffer.wrap(chars, 0, n * step));
+            }
+            done += n;
+        }
+        return out;
+    }
+
+    private static void encode(ByteBuffer in, ByteBuffer out, byte[] table, int width) {
+        if (out.remaining() / width < in.remaining()) {
+            throw new BufferOverflowException();
+        }
+        while (in.hasRemaining()) {
+            out.put(table, (in.get() & 0xFF) * width, width);
+        }
+    }
+
+    private static int hexValue(char c) {
+        int value = c < 128 ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Not a hex digit: '" + c + "'");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,267 @@
+package memory;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Pool of direct ByteBuffers in power-of-two size classes, for cipher input and output, socket I/O and key material.
+//
+//Buffers below 64 KiB are cut from 64 KiB direct slabs, larger ones up to MAX_POOLED are allocated one by one;
+//both live outside the Java heap, so the GC neither scans nor copies them and allocating one creates no garbage.
+//Each thread keeps a small cache per size class and works without synchronisation while the cache is neither
+//empty nor full. A full cache moves half of its buffers as one batch onto the class's global free list, a lock-free
+//Treiber stack, and an empty one takes a whole batch back, so the shared list is touched once per BATCH operations.
+//Batches are never reused, so a stale head cannot be pushed back (no ABA).
+//When a thread that used the arena has ended and been collected, its cache is moved onto the global lists, so
+//buffers cached by short-lived threads are not lost. Threads that allocate a few buffers and then exit, such as one
+//thread per connection, should use allocateShared / releaseShared, which bypass the thread cache altogether and
+//make the buffers reusable as soon as they are released.
+//Every buffer is zeroed when it is released. Requests above MAX_POOLED get their own buffer, zeroed and dropped on
+//release; they are not pool memory.
+public final class BufferArena {
+    private static final BufferArena SHARED = new BufferArena();
+
+    private static final int MIN_SHIFT = 4; // 16 bytes, one AES block
+    private static final int MAX_SHIFT = 20;
+    private static final int SLAB_SHIFT = 16;
+    private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+    private static final int BATCH = 16;
+    public static final int MAX_POOLED = 1 << MAX_SHIFT;
+
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(MAX_POOLED);
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final AtomicReferenceArray<Batch> free = new AtomicReferenceArray<>(CLASSES); // heads of the free lists
+    private final ThreadLocal<ThreadCache> caches = ThreadLocal.withInitial(this::newCache);
+    private final AtomicLong reserved = new AtomicLong();
+
+    // The process-wide arena
+    public static BufferArena shared() {
+        return SHARED;
+    }
+
+    // A direct buffer with position 0 and limit size; its capacity is size rounded up to a power of two
+    public ByteBuffer allocate(int size) {
+        checkSize(size);
+        if (size > MAX_POOLED) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        int sizeClass = sizeClass(size);
+        ThreadCache cache = caches.get();
+        ByteBuffer buffer = cache.poll(sizeClass);
+        if (buffer == null) {
+            buffer = refill(cache, sizeClass);
+        }
+        return buffer.limit(size);
+    }
+
+    // Zeroes buffer and returns it to the arena; it must not be used afterwards
+    public void release(ByteBuffer buffer) {
+        int sizeClass = scrub(buffer);
+        if (sizeClass < 0) {
+            return;
+        }
+        ThreadCache cache = caches.get();
+        if (!cache.offer(sizeClass, buffer)) {
+            push(sizeClass, cache.drainHalf(sizeClass));
+            cache.offer(sizeClass, buffer);
+        }
+    }
+
+    // As allocate, but taken straight from the global free list without touching the calling thread's cache
+    public ByteBuffer allocateShared(int size) {
+        checkSize(size);
+        if (size > MAX_POOLED) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        int sizeClass = sizeClass(size);
+        Batch taken = pop(sizeClass);
+        if (taken == null) {
+            return carve(null, sizeClass).limit(size);
+        }
+        if (taken.buffers.length > 1) {
+            push(sizeClass, Arrays.copyOfRange(taken.buffers, 1, taken.buffers.length));
+        }
+        return taken.buffers[0].limit(size);
+    }
+
+    // As release, but straight onto the global free list, where any thread can reuse the buffer at once
+    public void releaseShared(ByteBuffer buffer) {
+        int sizeClass = scrub(buffer);
+        if (sizeClass >= 0) {
+            push(sizeClass, new ByteBuffer[]{buffer});
+        }
+    }
+
+    // Direct memory held by the pool: slabs and pooled buffers, free or handed out. Buffers above MAX_POOLED are
+    // not counted.
+    public long reservedBytes() {
+        return reserved.get();
+    }
+
+    private static void checkSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+    }
+
+    private static int sizeClass(int size) {
+        return Math.max(0, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1) - MIN_SHIFT);
+    }
+
+    //zeroes a released buffer and returns its size class, or -1 for a buffer above MAX_POOLED
+    private static int scrub(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || buffer.isReadOnly()) {
+            throw new IllegalArgumentException("Not a buffer of this arena");
+        }
+        buffer.clear();
+        for (int i = 0; i < capacity; i += MAX_POOLED) {
+            buffer.put(i, ZEROS, 0, Math.min(MAX_POOLED, capacity - i));
+        }
+        if (capacity > MAX_POOLED) {
+            return -1;
+        }
+        int sizeClass = sizeClass(capacity);
+        if (capacity != 1 << (sizeClass + MIN_SHIFT)) {
+            throw new IllegalArgumentException("Not a buffer of this arena");
+        }
+        return sizeClass;
+    }
+
+    //a cache for the calling thread, moved onto the global lists once the thread has been collected
+    private ThreadCache newCache() {
+        ThreadCache cache = new ThreadCache();
+        // the action must not reach the thread, or the thread would never become unreachable
+        CLEANER.register(Thread.currentThread(), () -> flush(cache));
+        return cache;
+    }
+
+    //runs on the cleaner thread after the owning thread has ended, so nothing else touches the cache
+    private void flush(ThreadCache cache) {
+        for (int sizeClass = 0; sizeClass < CLASSES; sizeClass++) {
+            ByteBuffer[] buffers = cache.drainAll(sizeClass);
+            for (int from = 0; from < buffers.length; from += BATCH) {
+                push(sizeClass, Arrays.copyOfRange(buffers, from, Math.min(buffers.length, from + BATCH)));
+            }
+        }
+    }
+
+    //takes a batch from the global list, or carves new buffers, into the thread cache and returns one of them
+    private ByteBuffer refill(ThreadCache cache, int sizeClass) {
+        Batch taken = pop(sizeClass);
+        if (taken != null) {
+            for (ByteBuffer buffer : taken.buffers) {
+                cache.offer(sizeClass, buffer);
+            }
+            return cache.poll(sizeClass);
+        }
+        return carve(cache, sizeClass);
+    }
+
+    //allocates new memory for sizeClass and returns one buffer of it; the rest goes into cache (if not null) and
+    //then onto the global list
+    private ByteBuffer carve(ThreadCache cache, int sizeClass) {
+        int capacity = 1 << (sizeClass + MIN_SHIFT);
+        if (capacity >= 1 << SLAB_SHIFT) {
+            reserved.addAndGet(capacity);
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        ByteBuffer slab = ByteBuffer.allocateDirect(1 << SLAB_SHIFT);
+        reserved.addAndGet(slab.capacity());
+        ByteBuffer[] batch = null;
+        int filled = 0;
+        for (int offset = capacity; offset < slab.capacity(); offset += capacity) {
+            ByteBuffer buffer = slab.slice(offset, capacity);
+            if (cache != null && cache.offer(sizeClass, buffer)) {
+                continue;
+            }
+            if (batch == null) {
+                batch = new ByteBuffer[BATCH];
+            }
+            batch[filled++] = buffer;
+            if (filled == BATCH) {
+                push(sizeClass, batch);
+                batch = null;
+                filled = 0;
+            }
+        }
+        if (filled > 0) {
+            push(sizeClass, Arrays.copyOf(batch, filled));
+        }
+        return slab.slice(0, capacity);
+    }
+
+    private void push(int sizeClass, ByteBuffer[] buffers) {
+        Batch batch = new Batch(buffers);
+        do {
+            batch.next = free.get(sizeClass);
+        } while (!free.compareAndSet(sizeClass, batch.next, batch));
+    }
+
+    private Batch pop(int sizeClass) {
+        Batch batch;
+        do {
+            batch = free.get(sizeClass);
+            if (batch == null) {
+                return null;
+            }
+        } while (!free.compareAndSet(sizeClass, batch, batch.next));
+        return batch;
+    }
+
+    private static final class Batch {
+        final ByteBuffer[] buffers; // at most BATCH, so a batch always fits an empty thread cache
+        Batch next;
+
+        Batch(ByteBuffer[] buffers) {
+            this.buffers = buffers;
+        }
+    }
+
+    //per-thread stacks of free buffers, up to 2 * BATCH per size class
+    private static final class ThreadCache {
+        private final ByteBuffer[][] stacks = new ByteBuffer[CLASSES][2 * BATCH];
+        private final int[] sizes = new int[CLASSES];
+
+        ByteBuffer poll(int sizeClass) {
+            int size = sizes[sizeClass];
+            if (size == 0) {
+                return null;
+            }
+            ByteBuffer buffer = stacks[sizeClass][--size];
+            stacks[sizeClass][size] = null;
+            sizes[sizeClass] = size;
+            return buffer;
+        }
+
+        boolean offer(int sizeClass, ByteBuffer buffer) {
+            int size = sizes[sizeClass];
+            if (size == 2 * BATCH) {
+                return false;
+            }
+            stacks[sizeClass][size] = buffer;
+            sizes[sizeClass] = size + 1;
+            return true;
+        }
+
+        ByteBuffer[] drainAll(int sizeClass) {
+            ByteBuffer[] all = Arrays.copyOf(stacks[sizeClass], sizes[sizeClass]);
+            Arrays.fill(stacks[sizeClass], null);
+            sizes[sizeClass] = 0;
+            return all;
+        }
+
+        //the oldest BATCH buffers, for the global list
+        ByteBuffer[] drainHalf(int sizeClass) {
+            ByteBuffer[] stack = stacks[sizeClass];
+            ByteBuffer[] batch = Arrays.copyOf(stack, BATCH);
+            System.arraycopy(stack, BATCH, stack, 0, sizes[sizeClass] - BATCH);
+            Arrays.fill(stack, sizes[sizeClass] - BATCH, sizes[sizeClass], null);
+            sizes[sizeClass] -= BATCH;
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Process-wide registry of cipher metrics: per algorithm and mode counters of operations and bytes, and latency
+//histograms for block, key-setup and key-generation operations.
+//Engines look their counters and histograms up once into static final fields; the hot path then only adds to
+//striped LongAdders, so nothing is printed, locked or allocated per operation. snapshot() is for scraping.
+public final class CipherMetrics {
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private CipherMetrics() {
+    }
+
+    // The counter for an algorithm and mode, e.g. ("AES", "encrypt"), created on first use
+    public static Counter counter(String algorithm, String mode) {
+        return COUNTERS.computeIfAbsent(algorithm + "/" + mode, k -> new Counter());
+    }
+
+    // The latency histogram for an algorithm and operation, e.g. ("RSA", "keygen"), created on first use
+    public static LatencyHistogram histogram(String algorithm, String operation) {
+        return HISTOGRAMS.computeIfAbsent(algorithm + "/" + operation, k -> new LatencyHistogram());
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, long[]> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, new long[]{counter.operations(), counter.bytes()}));
+        Map<String, LatencyHistogram.Summary> latencies = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> latencies.put(name, histogram.summary()));
+        return new Snapshot(System.currentTimeMillis(), counters, latencies);
+    }
+
+    // Zeroes every counter and histogram (the registered names stay)
+    public static void reset() {
+        COUNTERS.values().forEach(Counter::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    public static final class Counter {
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        Counter() {
+        }
+
+        // One operation over byteCount bytes
+        public void record(long byteCount) {
+            operations.increment();
+            bytes.add(byteCount);
+        }
+
+        public void record(long operationCount, long byteCount) {
+            operations.add(operationCount);
+            bytes.add(byteCount);
+        }
+
+        public long operations() {
+            return operations.sum();
+        }
+
+        public long bytes() {
+            return bytes.sum();
+        }
+
+        void reset() {
+            operations.reset();
+            bytes.reset();
+        }
+    }
+
+    // Point-in-time copy of every metric, keyed by "algorithm/mode" and sorted by name
+    public static final class Snapshot {
+        private final long timestamp;
+        private final Map<String, long[]> counters;
+        private final Map<String, LatencyHistogram.Summary> latencies;
+
+        Snapshot(long timestamp, Map<String, long[]> counters, Map<String, LatencyHistogram.Summary> latencies) {
+            this.timestamp = timestamp;
+            this.counters = Collections.unmodifiableMap(counters);
+            this.latencies = Collections.unmodifiableMap(latencies);
+        }
+
+        // Milliseconds since the epoch when the snapshot was taken
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long operations(String name) {
+            long[] value = counters.get(name);
+            return value == null ? 0 : value[0];
+        }
+
+        public long bytes(String name) {
+            long[] value = counters.get(name);
+            return value == null ? 0 : value[1];
+        }
+
+        public Map<String, LatencyHistogram.Summary> getLatencies() {
+            return latencies;
+        }
+
+        public Set<String> getCounterNames() {
+            return counters.keySet();
+        }
+
+        // Prometheus text exposition format
+        public String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("# TYPE cipher_operations_total counter\n");
+            counters.forEach((name, value) -> line(sb, "cipher_operations_total", name, "mode", null, value[0]));
+            sb.append("# TYPE cipher_bytes_total counter\n");
+            counters.forEach((name, value) -> line(sb, "cipher_bytes_total", name, "mode", null, value[1]));
+            sb.append("# TYPE cipher_latency_nanoseconds summary\n");
+            latencies.forEach((name, summary) -> {
+                line(sb, "cipher_latency_nanoseconds", name, "operation", "0.5", summary.getP50());
+                line(sb, "cipher_latency_nanoseconds", name, "operation", "0.9", summary.getP90());
+                line(sb, "cipher_latency_nanoseconds", name, "operation", "0.99", summary.getP99());
+                line(sb, "cipher_latency_nanoseconds", name, "operation", "0.999", summary.getP999());
+                line(sb, "cipher_latency_nanoseconds_count", name, "operation", null, summary.getCount());
+                line(sb, "cipher_latency_nanoseconds_max", name, "operation", null, summary.getMax());
+            });
+            return sb.toString();
+        }
+
+        private static void line(StringBuilder sb, String metric, String name, String label, String quantile, long value) {
+            int slash = name.indexOf('/');
+            sb.append(metric).append("{algorithm=\"").append(name, 0, slash).append("\",")
+                    .append(label).append("=\"").append(name, slash + 1, name.length()).append('"');
+            if (quantile != null) {
+                sb.append(",quantile=\"").append(quantile).append('"');
+            }
+            sb.append("} ").append(value).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            counters.forEach((name, value) ->
+                    sb.append(String.format("%-24s %12d ops %16d bytes%n", name, value[0], value[1])));
+            latencies.forEach((name, summary) ->
+                    sb.append(String.format("%-24s %s%n", name, summary)));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//JFR event around one PrimeGenerator.generatePrimes call
+@Name("encryption.PrimeSearch")
+@Label("Prime Search")
+@Category({"Encryption", "RSA"})
+@Description("Sieve and Miller-Rabin search for random primes")
+public final class PrimeSearchEvent extends Event {
+    @Label("Prime Size")
+    public int bits;
+
+    @Label("Primes Requested")
+    public int count;
+
+    @Label("Miller-Rabin Candidates")
+    @Description("Candidates that survived the sieve and went through Miller-Rabin")
+    public long candidates;
+}
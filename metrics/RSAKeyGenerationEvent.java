@@ -0,0 +1,20 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//JFR event around one RSA.generateRSAKeys call
+@Name("encryption.RSAKeyGeneration")
+@Label("RSA Key Generation")
+@Category({"Encryption", "RSA"})
+@Description("Prime search and private key precomputation for a new RSA key pair")
+public final class RSAKeyGenerationEvent extends Event {
+    @Label("Modulus Size")
+    public int modulusBits;
+
+    @Label("Primes")
+    public int primes;
+}
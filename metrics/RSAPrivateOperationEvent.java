@@ -0,0 +1,20 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//JFR event around one RSA private-key (blinded CRT) exponentiation
+@Name("encryption.RSAPrivateOperation")
+@Label("RSA Private Operation")
+@Category({"Encryption", "RSA"})
+@Description("Blinded CRT exponentiation with the private key, used by decryption and signing")
+public final class RSAPrivateOperationEvent extends Event {
+    @Label("Modulus Size")
+    public int modulusBits;
+
+    @Label("Primes")
+    public int primes;
+}